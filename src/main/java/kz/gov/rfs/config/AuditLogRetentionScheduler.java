@@ -0,0 +1,275 @@
+package kz.gov.rfs.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kz.gov.rfs.service.ClusterLock;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Обслуживание партиций audit_logs: заранее создаёт партиции на будущие месяцы,
+ * а партиции старше audit.retention.months отсоединяет, выгружает в gzip NDJSON и удаляет.
+ * Строки, попавшие в DEFAULT-партицию, переносятся в помесячные и дальше архивируются как обычно.
+ * Строки старой непартиционированной таблицы (audit_logs_legacy) переносятся порциями в фоне, не при старте.
+ * В кластере обслуживание выполняет один инстанс (advisory lock).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AuditLogRetentionScheduler {
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final int MONTHS_AHEAD = 2;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final String LOCK_NAME = "audit-log-partitions";
+    private static final String LEGACY_TABLE = "audit_logs_legacy";
+    private static final long LEGACY_BATCH_PAUSE_MS = 100;
+
+    private static final String MOVE_LEGACY_BATCH_SQL = "WITH moved AS (DELETE FROM audit_logs_legacy WHERE id IN (" +
+            "SELECT id FROM audit_logs_legacy ORDER BY id LIMIT ?) " +
+            "RETURNING id, user_id, action, entity_type, entity_id, details, ip_address, \"timestamp\") " +
+            "INSERT INTO audit_logs (id, user_id, action, entity_type, entity_id, details, ip_address, \"timestamp\") " +
+            "SELECT id, user_id, action, entity_type, entity_id, details, ip_address, \"timestamp\" FROM moved";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ClusterLock clusterLock;
+
+    @Value("${audit.retention.months:24}")
+    private int retentionMonths;
+
+    @Value("${audit.archive-dir:audit-archive}")
+    private String archiveDir;
+
+    @Value("${audit.legacy-migration.batch-size:5000}")
+    private int legacyBatchSize;
+
+    @Scheduled(cron = "${audit.retention.cron:0 30 3 * * *}")
+    public void maintainPartitions() {
+        log.info("🗄️ Starting audit log partition maintenance...");
+
+        if (!clusterLock.runExclusively(LOCK_NAME, this::runMaintenance)) {
+            log.info("Audit log partition maintenance is already running on another instance, skipping");
+        }
+    }
+
+    /**
+     * Перенос строк из audit_logs_legacy, оставшейся после перевода таблицы в партиционированную.
+     * Каждая порция — своя короткая транзакция; пока перенос не закончен, в журнале видны не все старые записи
+     */
+    @Scheduled(initialDelayString = "${audit.legacy-migration.initial-delay-ms:60000}",
+            fixedDelayString = "${audit.legacy-migration.interval-ms:600000}")
+    public void migrateLegacyRows() {
+        if (!legacyTableExists()) {
+            return;
+        }
+        clusterLock.runExclusively(LOCK_NAME, () -> {
+            try {
+                moveLegacyRows();
+            } catch (Exception e) {
+                log.error("❌ Error moving rows out of the legacy audit log table", e);
+            }
+        });
+    }
+
+    private boolean legacyTableExists() {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, LEGACY_TABLE)));
+    }
+
+    private void moveLegacyRows() throws InterruptedException {
+        if (!legacyTableExists()) {
+            return;
+        }
+        log.info("🗄️ Moving rows out of the legacy audit log table...");
+
+        // Партиции для всех месяцев старой таблицы — до переноса, чтобы строки не легли в DEFAULT
+        List<LocalDate> months = transactionTemplate.execute(status -> jdbcTemplate.queryForList(
+                "SELECT DISTINCT date_trunc('month', \"timestamp\")::date FROM " + LEGACY_TABLE, LocalDate.class));
+        for (LocalDate monthStart : months) {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.queryForList("SELECT audit_logs_ensure_partition(?)", monthStart));
+        }
+
+        long total = 0;
+        int moved;
+        do {
+            Integer rows = transactionTemplate.execute(status ->
+                    jdbcTemplate.update(MOVE_LEGACY_BATCH_SQL, legacyBatchSize));
+            moved = rows != null ? rows : 0;
+            total += moved;
+            if (moved == legacyBatchSize) {
+                Thread.sleep(LEGACY_BATCH_PAUSE_MS);
+            }
+        } while (moved == legacyBatchSize);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Boolean empty = jdbcTemplate.queryForObject(
+                    "SELECT NOT EXISTS (SELECT 1 FROM " + LEGACY_TABLE + ")", Boolean.class);
+            if (Boolean.TRUE.equals(empty)) {
+                jdbcTemplate.execute("DROP TABLE " + LEGACY_TABLE);
+            }
+        });
+        log.info("✅ Moved {} rows out of the legacy audit log table", total);
+    }
+
+    private void runMaintenance() {
+        try {
+            createUpcomingPartitions();
+        } catch (Exception e) {
+            log.error("❌ Error creating audit log partitions", e);
+        }
+
+        try {
+            moveDefaultPartitionRows();
+        } catch (Exception e) {
+            log.error("❌ Error moving rows out of the default audit log partition", e);
+        }
+
+        if (legacyTableExists()) {
+            // Старые месяцы ещё дополняются из audit_logs_legacy — архивируем после переноса
+            log.info("Legacy audit log rows are still being moved, archiving is postponed");
+            return;
+        }
+
+        YearMonth oldestKept = YearMonth.now().minusMonths(retentionMonths);
+        for (YearMonth month : findPartitionMonths()) {
+            if (!month.isBefore(oldestKept)) {
+                continue;
+            }
+            try {
+                archivePartition(month);
+            } catch (Exception e) {
+                // Партиция остаётся (возможно, уже отсоединённой) — повторим при следующем запуске
+                log.error("❌ Error archiving audit log partition {}", month, e);
+            }
+        }
+    }
+
+    private void createUpcomingPartitions() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= MONTHS_AHEAD; i++) {
+            LocalDate monthStart = current.plusMonths(i).atDay(1);
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.queryForList("SELECT audit_logs_ensure_partition(?)", monthStart));
+        }
+    }
+
+    /**
+     * Строки вне созданных партиций (события с датой далеко в прошлом или будущем) попадают в DEFAULT.
+     * Для каждого такого месяца создаётся партиция — функция переносит в неё строки из DEFAULT
+     */
+    private void moveDefaultPartitionRows() {
+        List<LocalDate> months = transactionTemplate.execute(status -> jdbcTemplate.queryForList(
+                "SELECT DISTINCT date_trunc('month', \"timestamp\")::date FROM audit_logs_default",
+                LocalDate.class));
+        for (LocalDate monthStart : months) {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.queryForList("SELECT audit_logs_ensure_partition(?)", monthStart));
+            log.warn("⚠️ Moved audit log rows for {} out of the default partition", YearMonth.from(monthStart));
+        }
+    }
+
+    /**
+     * Все помесячные партиции, включая уже отсоединённые, но ещё не выгруженные
+     */
+    private List<YearMonth> findPartitionMonths() {
+        List<String> tables = transactionTemplate.execute(status -> jdbcTemplate.queryForList(
+                "SELECT tablename FROM pg_tables " +
+                        "WHERE schemaname = current_schema() AND tablename ~ '^audit_logs_p[0-9]{6}$' " +
+                        "ORDER BY tablename",
+                String.class));
+        return tables.stream()
+                .map(name -> YearMonth.parse(name.substring("audit_logs_p".length()), PARTITION_SUFFIX))
+                .toList();
+    }
+
+    private void archivePartition(YearMonth month) throws IOException {
+        String partition = "audit_logs_p" + month.format(PARTITION_SUFFIX);
+
+        // 1. Отсоединяем: запросы к audit_logs больше не видят эти строки
+        transactionTemplate.executeWithoutResult(status -> {
+            Boolean attached = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_inherits WHERE inhrelid = CAST(? AS regclass))",
+                    Boolean.class, partition);
+            if (Boolean.TRUE.equals(attached)) {
+                jdbcTemplate.execute("ALTER TABLE audit_logs DETACH PARTITION " + partition);
+            }
+        });
+
+        // 2. Потоково выгружаем во временный файл и атомарно переименовываем
+        Path dir = Paths.get(archiveDir).toAbsolutePath().normalize();
+        Files.createDirectories(dir);
+        Path target = dir.resolve("audit_logs_" + month + ".ndjson.gz");
+        if (Files.exists(target)) {
+            // Месяц уже архивировался (например, строки позже перенесены из DEFAULT) — не перезаписываем архив
+            target = dir.resolve("audit_logs_" + month + "-" + System.currentTimeMillis() + ".ndjson.gz");
+        }
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+
+        long rows;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8))) {
+            rows = exportRows(partition, writer);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // 3. Удаляем только после успешной выгрузки
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.execute("DROP TABLE " + partition));
+
+        log.info("✅ Archived audit log partition {}: {} rows -> {}", partition, rows, target);
+    }
+
+    private long exportRows(String partition, Writer writer) {
+        long[] count = {0};
+        JdbcTemplate exportTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        exportTemplate.setFetchSize(EXPORT_FETCH_SIZE);
+        transactionTemplate.executeWithoutResult(status -> {
+            // fetchSize работает как серверный курсор только внутри транзакции
+            exportTemplate.query("SELECT id, user_id, action, entity_type, entity_id, details, ip_address, \"timestamp\" " +
+                    "FROM " + partition + " ORDER BY id", rs -> {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("id", rs.getLong("id"));
+                row.put("userId", rs.getObject("user_id"));
+                row.put("action", rs.getString("action"));
+                row.put("entityType", rs.getString("entity_type"));
+                row.put("entityId", rs.getObject("entity_id"));
+                row.put("details", rs.getString("details"));
+                row.put("ipAddress", rs.getString("ip_address"));
+                row.put("timestamp", rs.getObject("timestamp", LocalDateTime.class));
+                try {
+                    writer.write(objectMapper.writeValueAsString(row));
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+        });
+        return count[0];
+    }
+}
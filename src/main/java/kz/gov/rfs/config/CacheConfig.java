@@ -1,9 +1,15 @@
 package kz.gov.rfs.config;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import java.util.concurrent.TimeUnit;
@@ -12,15 +18,48 @@ import java.util.concurrent.TimeUnit;
 @EnableCaching
 public class CacheConfig {
 
+    public static final String NEWS = "news";
+    public static final String SERVICES = "services";
+    public static final String PROCUREMENTS = "procurements";
+    public static final String CONTACTS = "contacts";
+    public static final String DEPARTMENTS = "departments";
+    public static final String ABOUT = "about";
+    public static final String EMPLOYEES = "employees";
+
+    /**
+     * Обёрнут в TransactionAwareCacheManagerProxy: @CacheEvict и put внутри @Transactional
+     * выполняются после коммита, иначе параллельный запрос успеет закэшировать ещё старые данные
+     */
     @Bean
     public CacheManager cacheManager() {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager(
-                "news", "services", "procurements", "contacts",
-                "departments", "about", "employees"
+                NEWS, SERVICES, PROCUREMENTS, CONTACTS,
+                DEPARTMENTS, ABOUT, EMPLOYEES
         );
 
         cacheManager.setCaffeine(caffeineCacheBuilder());
-        return cacheManager;
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+
+    /**
+     * Доля попаданий по каждому кэшу: /actuator/metrics/cache.hit.ratio?tag=cache:news
+     * (cache.gets / cache.puts / cache.evictions регистрирует сам Spring Boot)
+     */
+    @Bean
+    public MeterBinder cacheHitRatioMetrics(CacheManager cacheManager) {
+        return registry -> cacheManager.getCacheNames().forEach(name -> {
+            Cache target = cacheManager.getCache(name);
+            if (target instanceof TransactionAwareCacheDecorator decorator) {
+                target = decorator.getTargetCache();
+            }
+            if (target instanceof CaffeineCache caffeineCache) {
+                Gauge.builder("cache.hit.ratio", caffeineCache,
+                                cache -> cache.getNativeCache().stats().hitRate())
+                        .tag("cache", name)
+                        .description("Cache hit ratio since application start")
+                        .register(registry);
+            }
+        });
     }
 
     private Caffeine<Object, Object> caffeineCacheBuilder() {
@@ -1,9 +1,13 @@
 package kz.gov.rfs.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import kz.gov.rfs.security.BoundedPasswordEncoder;
 import kz.gov.rfs.security.JwtAuthenticationFilter;
 import kz.gov.rfs.security.JwtAuthenticationEntryPoint;
 import kz.gov.rfs.security.RateLimitingFilter;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -14,8 +18,11 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -25,7 +32,10 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
+@Slf4j
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity(prePostEnabled = true)
@@ -36,6 +46,22 @@ public class SecurityConfig {
     private final RateLimitingFilter rateLimitingFilter;
     private final UserDetailsService userDetailsService;
     private final JwtAuthenticationEntryPoint authenticationEntryPoint;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${security.password.encoder:bcrypt}")
+    private String passwordEncoderId;
+
+    @Value("${security.password.bcrypt-strength:12}")
+    private int bcryptStrength;
+
+    @Value("${security.password.hashing.threads:0}")
+    private int hashingThreads;
+
+    @Value("${security.password.hashing.queue-capacity:50}")
+    private int hashingQueueCapacity;
+
+    @Value("${security.password.hashing.timeout-ms:5000}")
+    private long hashingTimeoutMs;
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -52,6 +78,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/contacts/**").permitAll()
                         .requestMatchers("/api/departments/**", "/api/departments/{id}/**").permitAll()
                         .requestMatchers("/api/about/**").permitAll()
+                        .requestMatchers("/api/homepage").permitAll()
                         .requestMatchers("/api/documents/**").permitAll()
                         .requestMatchers("/api/auth/login", "/api/auth/refresh").permitAll()
                         .requestMatchers("/uploads/**").permitAll()
@@ -100,7 +127,7 @@ public class SecurityConfig {
         configuration.setAllowedOriginPatterns(Arrays.asList("*"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
-        configuration.setExposedHeaders(Arrays.asList("Authorization", "X-Total-Count"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "X-Total-Count", "Upload-Offset"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
@@ -114,6 +141,10 @@ public class SecurityConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider(passwordEncoder());
         authProvider.setUserDetailsService(userDetailsService);
         authProvider.setHideUserNotFoundExceptions(false);
+        // Хэши со старой стоимостью/алгоритмом перезаписываются при успешном входе
+        if (userDetailsService instanceof UserDetailsPasswordService passwordService) {
+            authProvider.setUserDetailsPasswordService(passwordService);
+        }
         return authProvider;
     }
 
@@ -122,8 +153,29 @@ public class SecurityConfig {
         return config.getAuthenticationManager();
     }
 
+    /**
+     * Новые хэши — с префиксом {id}; старые хэши без префикса проверяются как BCrypt.
+     * security.password.encoder=bcrypt|argon2; пропускная способность входа по стоимости —
+     * PasswordEncoderBenchmark (JMH, src/test)
+     */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", new BCryptPasswordEncoder(bcryptStrength));
+        encoders.put("argon2", Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        if (!encoders.containsKey(passwordEncoderId)) {
+            throw new IllegalStateException("Unsupported password encoder: " + passwordEncoderId);
+        }
+
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(passwordEncoderId, encoders);
+        delegating.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+
+        int threads = hashingThreads > 0
+                ? hashingThreads
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        log.info("✅ Password encoder '{}' (bcrypt strength {}) on {} hashing threads",
+                passwordEncoderId, bcryptStrength, threads);
+
+        return new BoundedPasswordEncoder(delegating, threads, hashingQueueCapacity, hashingTimeoutMs, meterRegistry);
     }
 }
\ No newline at end of file
@@ -1,13 +1,14 @@
 package kz.gov.rfs.config;
 
-import kz.gov.rfs.repository.RefreshTokenRepository;
+import kz.gov.rfs.service.ChunkedPurger;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.Instant;
 
 @Slf4j
@@ -16,31 +17,43 @@ import java.time.Instant;
 @RequiredArgsConstructor
 public class TokenCleanupScheduler {
 
-    private final RefreshTokenRepository refreshTokenRepository;
+    private static final String PURGE_NAME = "refresh-tokens";
+
+    // Порция находится по индексу idx_refresh_token_expiry, удаление — напрямую по ctid, без повторного поиска по PK
+    private static final String DELETE_EXPIRED_CHUNK_SQL = "DELETE FROM refresh_tokens WHERE ctid = ANY (ARRAY(" +
+            "SELECT ctid FROM refresh_tokens WHERE expiry_date < ? ORDER BY expiry_date LIMIT ?))";
+
+    private final ChunkedPurger chunkedPurger;
+
+    @Value("${token.purge.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${token.purge.pause-ms:50}")
+    private long pauseMs;
 
     /**
      * Запуск каждый день в 3:00 AM
      */
     @Scheduled(cron = "0 0 3 * * *")
-    @Transactional
     public void cleanupExpiredTokens() {
         log.info("🧹 Starting cleanup of expired refresh tokens...");
 
         try {
-            long deletedCount = refreshTokenRepository.deleteAllExpiredTokens(Instant.now());
-            log.info("✅ Cleaned up {} expired refresh tokens", deletedCount);
+            long deletedCount = purgeExpiredTokens();
+            if (deletedCount >= 0) {
+                log.info("✅ Cleaned up {} expired refresh tokens", deletedCount);
+            }
         } catch (Exception e) {
             log.error("❌ Error during token cleanup", e);
         }
     }
 
     @Scheduled(fixedRate = 21600000) // 6 часов в миллисекундах
-    @Transactional
     public void periodicCleanup() {
         log.debug("🔄 Periodic token cleanup started");
 
         try {
-            long deletedCount = refreshTokenRepository.deleteAllExpiredTokens(Instant.now());
+            long deletedCount = purgeExpiredTokens();
             if (deletedCount > 0) {
                 log.info("🧹 Periodic cleanup: removed {} expired tokens", deletedCount);
             }
@@ -48,4 +61,12 @@ public class TokenCleanupScheduler {
             log.error("❌ Error during periodic cleanup", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * @return сколько удалено; -1 — очистку сейчас выполняет другой инстанс
+     */
+    private long purgeExpiredTokens() {
+        return chunkedPurger.purge(PURGE_NAME, DELETE_EXPIRED_CHUNK_SQL, chunkSize, pauseMs,
+                Timestamp.from(Instant.now()));
+    }
+}
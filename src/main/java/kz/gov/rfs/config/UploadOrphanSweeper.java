@@ -0,0 +1,55 @@
+package kz.gov.rfs.config;
+
+import kz.gov.rfs.service.ClusterLock;
+import kz.gov.rfs.service.UploadStorageService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Пересчитывает ссылки на загруженные файлы и удаляет файлы, на которые никто не ссылается.
+ * Файл удаляется только спустя upload.sweeper.grace-hours после последней загрузки:
+ * редактор успевает сохранить новость со свежезагруженной картинкой.
+ * В кластере проход выполняет один инстанс (advisory lock).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UploadOrphanSweeper {
+
+    private static final Duration STALE_TEMP_FILE_AGE = Duration.ofDays(1);
+
+    private final UploadStorageService uploadStorageService;
+    private final ClusterLock clusterLock;
+
+    @Value("${upload.sweeper.grace-hours:24}")
+    private long graceHours;
+
+    @Value("${upload.sweeper.batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(cron = "${upload.sweeper.cron:0 15 4 * * *}")
+    public void sweep() {
+        log.info("🧹 Starting upload orphan sweep...");
+
+        if (!clusterLock.runExclusively("upload-orphan-sweep", this::runSweep)) {
+            log.info("Upload orphan sweep is already running on another instance, skipping");
+        }
+    }
+
+    private void runSweep() {
+        try {
+            int recounted = uploadStorageService.recountReferences();
+            int deleted = uploadStorageService.deleteOrphans(Duration.ofHours(graceHours), batchSize);
+            int tempFiles = uploadStorageService.deleteStaleTempFiles(STALE_TEMP_FILE_AGE);
+            log.info("✅ Upload sweep: {} reference counts updated, {} orphaned files and {} stale temp files removed",
+                    recounted, deleted, tempFiles);
+        } catch (Exception e) {
+            log.error("❌ Error during upload orphan sweep", e);
+        }
+    }
+}
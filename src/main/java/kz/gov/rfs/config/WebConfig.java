@@ -1,26 +0,0 @@
-package kz.gov.rfs.config;
-
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-
-@Configuration
-public class WebConfig implements WebMvcConfigurer {
-
-    @Value("${file.upload-dir:uploads}")
-    private String uploadDir;
-
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        Path uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
-        String uploadPathStr = "file:" + uploadPath.toString() + "/";
-
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations(uploadPathStr)
-                // Добавляем security headers для статических файлов
-                .setCachePeriod(3600); // Кэш на 1 час
-    }
-}
\ No newline at end of file
@@ -5,11 +5,13 @@ import kz.gov.rfs.entity.AboutSection;
 import kz.gov.rfs.entity.User;
 import kz.gov.rfs.service.AboutService;
 import kz.gov.rfs.service.AuditLogService;
+import kz.gov.rfs.service.ContentCollection;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import jakarta.validation.Valid;
 import java.util.List;
 
@@ -19,20 +21,24 @@ import java.util.List;
 public class AboutController {
     private final AboutService aboutService;
     private final AuditLogService auditLogService;
+    private final ConditionalGet conditionalGet;
 
     @GetMapping("/section/{section}")
-    public ResponseEntity<List<About>> getAboutBySection(@PathVariable AboutSection section) {
-        return ResponseEntity.ok(aboutService.getAboutBySection(section));
+    public ResponseEntity<List<About>> getAboutBySection(@PathVariable AboutSection section, WebRequest request) {
+        return conditionalGet.collection(request, "about", ContentCollection.ABOUT,
+                () -> aboutService.getAboutBySection(section));
     }
 
     @GetMapping("/key/{sectionKey}")
-    public ResponseEntity<About> getAboutBySectionKey(@PathVariable String sectionKey) {
-        return ResponseEntity.ok(aboutService.getAboutBySectionKey(sectionKey));
+    public ResponseEntity<About> getAboutBySectionKey(@PathVariable String sectionKey, WebRequest request) {
+        return conditionalGet.collection(request, "about", ContentCollection.ABOUT,
+                () -> aboutService.getAboutBySectionKey(sectionKey));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<About> getAboutById(@PathVariable Long id) {
-        return ResponseEntity.ok(aboutService.getAboutById(id));
+    public ResponseEntity<About> getAboutById(@PathVariable Long id, WebRequest request) {
+        return conditionalGet.item(request, "about", ContentCollection.ABOUT, id,
+                () -> aboutService.getAboutById(id));
     }
 
     @PostMapping
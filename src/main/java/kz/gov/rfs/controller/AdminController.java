@@ -1,6 +1,7 @@
 package kz.gov.rfs.controller;
 
 import kz.gov.rfs.dto.ChangePasswordRequest;
+import kz.gov.rfs.dto.CursorPage;
 import kz.gov.rfs.dto.DashboardStats;
 import kz.gov.rfs.dto.UpdateRoleRequest;
 import kz.gov.rfs.entity.AuditLog;
@@ -110,6 +111,14 @@ public class AdminController {
         return ResponseEntity.ok(auditLogService.getAllLogs(pageable));
     }
 
+    // Keyset-режим: ?after= (первая страница) или ?after={nextCursor}
+    @GetMapping(value = "/audit-logs", params = "after")
+    public ResponseEntity<CursorPage<AuditLog>> getAuditLogsAfter(
+            @RequestParam String after,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(auditLogService.getLogsAfter(after, size));
+    }
+
     @GetMapping("/audit-logs/user/{userId}")
     public ResponseEntity<List<AuditLog>> getAuditLogsByUser(@PathVariable Long userId) {
         return ResponseEntity.ok(auditLogService.getLogsByUser(userId));
@@ -4,10 +4,12 @@ import kz.gov.rfs.dto.AuthRequest;
 import kz.gov.rfs.dto.AuthResponse;
 import kz.gov.rfs.dto.RefreshTokenRequest;
 import kz.gov.rfs.service.AuthService;
+import kz.gov.rfs.util.ClientIp;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
 @RestController
@@ -17,8 +19,10 @@ public class AuthController {
     private final AuthService authService;
 
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@Valid @RequestBody AuthRequest request) {
-        return ResponseEntity.ok(authService.login(request));
+    public ResponseEntity<AuthResponse> login(@Valid @RequestBody AuthRequest request,
+                                              HttpServletRequest httpRequest) {
+        return ResponseEntity.ok(authService.login(request,
+                httpRequest.getHeader("User-Agent"), ClientIp.resolve(httpRequest)));
     }
 
     @PostMapping("/refresh")
@@ -27,9 +31,10 @@ public class AuthController {
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<Void> logout(Authentication authentication) {
+    public ResponseEntity<Void> logout(Authentication authentication,
+                                       @RequestBody(required = false) RefreshTokenRequest request) {
         if (authentication != null) {
-            authService.logout(authentication.getName());
+            authService.logout(authentication.getName(), request != null ? request.getRefreshToken() : null);
         }
         return ResponseEntity.noContent().build();
     }
@@ -0,0 +1,72 @@
+package kz.gov.rfs.controller;
+
+import kz.gov.rfs.service.ContentCollection;
+import kz.gov.rfs.service.ContentVersionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.env.Environment;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Условные GET для публичных эндпоинтов: ETag по версии контента и Cache-Control по политике эндпоинта.
+ * Если If-None-Match совпал — 304 сразу после запроса версии, основной запрос не выполняется.
+ *
+ * Настройки: http-cache.&lt;policy&gt;.max-age-seconds (по умолчанию http-cache.default.max-age-seconds);
+ * 0 — no-cache, т.е. клиент и CDN каждый раз перепроверяют ETag
+ */
+@Component
+@RequiredArgsConstructor
+public class ConditionalGet {
+
+    private final ContentVersionService contentVersionService;
+    private final Environment environment;
+
+    private final Map<String, CacheControl> policies = new ConcurrentHashMap<>();
+
+    public <T> ResponseEntity<T> collection(WebRequest request, String policy, ContentCollection collection,
+                                            Supplier<T> body) {
+        return respond(request, policy, contentVersionService.getCollectionVersion(collection), body);
+    }
+
+    public <T> ResponseEntity<T> item(WebRequest request, String policy, ContentCollection collection, Long id,
+                                      Supplier<T> body) {
+        return respond(request, policy, contentVersionService.getItemVersion(collection, id), body);
+    }
+
+    private <T> ResponseEntity<T> respond(WebRequest request, String policy, String version, Supplier<T> body) {
+        if (version == null) {
+            // Записи нет — сервис сам ответит ошибкой
+            return ResponseEntity.ok(body.get());
+        }
+
+        // Версия читается до данных: если между ними контент изменился, клиент получит новые данные
+        // со старым ETag и просто перезапросит их, но никогда — старые данные с новым ETag
+        String etag = "W/\"" + version + "\"";
+        CacheControl cacheControl = cacheControl(policy);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(body.get());
+    }
+
+    public CacheControl cacheControl(String policy) {
+        return policies.computeIfAbsent(policy, this::resolveCacheControl);
+    }
+
+    private CacheControl resolveCacheControl(String policy) {
+        long defaultMaxAge = environment.getProperty("http-cache.default.max-age-seconds", Long.class, 0L);
+        long maxAge = environment.getProperty("http-cache." + policy + ".max-age-seconds", Long.class, defaultMaxAge);
+        if (maxAge <= 0) {
+            return CacheControl.noCache().cachePublic();
+        }
+        return CacheControl.maxAge(Duration.ofSeconds(maxAge)).cachePublic();
+    }
+}
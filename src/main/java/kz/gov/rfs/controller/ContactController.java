@@ -5,11 +5,13 @@ import kz.gov.rfs.entity.ContactType;
 import kz.gov.rfs.entity.User;
 import kz.gov.rfs.service.AuditLogService;
 import kz.gov.rfs.service.ContactService;
+import kz.gov.rfs.service.ContentCollection;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import jakarta.validation.Valid;
 import java.util.List;
 
@@ -19,20 +21,24 @@ import java.util.List;
 public class ContactController {
     private final ContactService contactService;
     private final AuditLogService auditLogService;
+    private final ConditionalGet conditionalGet;
 
     @GetMapping
-    public ResponseEntity<List<Contact>> getAllContacts() {
-        return ResponseEntity.ok(contactService.getAllContacts());
+    public ResponseEntity<List<Contact>> getAllContacts(WebRequest request) {
+        return conditionalGet.collection(request, "contacts", ContentCollection.CONTACTS,
+                contactService::getAllContacts);
     }
 
     @GetMapping("/type/{type}")
-    public ResponseEntity<List<Contact>> getContactsByType(@PathVariable ContactType type) {
-        return ResponseEntity.ok(contactService.getContactsByType(type));
+    public ResponseEntity<List<Contact>> getContactsByType(@PathVariable ContactType type, WebRequest request) {
+        return conditionalGet.collection(request, "contacts", ContentCollection.CONTACTS,
+                () -> contactService.getContactsByType(type));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Contact> getContactById(@PathVariable Long id) {
-        return ResponseEntity.ok(contactService.getContactById(id));
+    public ResponseEntity<Contact> getContactById(@PathVariable Long id, WebRequest request) {
+        return conditionalGet.item(request, "contacts", ContentCollection.CONTACTS, id,
+                () -> contactService.getContactById(id));
     }
 
     @PostMapping
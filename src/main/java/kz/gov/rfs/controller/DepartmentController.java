@@ -3,12 +3,14 @@ package kz.gov.rfs.controller;
 import kz.gov.rfs.entity.Department;
 import kz.gov.rfs.entity.User;
 import kz.gov.rfs.service.AuditLogService;
+import kz.gov.rfs.service.ContentCollection;
 import kz.gov.rfs.service.DepartmentService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import jakarta.validation.Valid;
 import java.util.List;
 
@@ -18,15 +20,18 @@ import java.util.List;
 public class DepartmentController {
     private final DepartmentService departmentService;
     private final AuditLogService auditLogService;
+    private final ConditionalGet conditionalGet;
 
     @GetMapping
-    public ResponseEntity<List<Department>> getAllDepartments() {
-        return ResponseEntity.ok(departmentService.getAllDepartments());
+    public ResponseEntity<List<Department>> getAllDepartments(WebRequest request) {
+        return conditionalGet.collection(request, "departments", ContentCollection.DEPARTMENTS,
+                departmentService::getAllDepartments);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Department> getDepartmentById(@PathVariable Long id) {
-        return ResponseEntity.ok(departmentService.getDepartmentById(id));
+    public ResponseEntity<Department> getDepartmentById(@PathVariable Long id, WebRequest request) {
+        return conditionalGet.item(request, "departments", ContentCollection.DEPARTMENTS, id,
+                () -> departmentService.getDepartmentById(id));
     }
 
     @PostMapping
@@ -1,17 +1,30 @@
 package kz.gov.rfs.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import kz.gov.rfs.entity.Role;
+import kz.gov.rfs.entity.User;
+import kz.gov.rfs.service.AuditLogService;
+import kz.gov.rfs.service.ImageDerivativeService;
+import kz.gov.rfs.service.NewsService;
+import kz.gov.rfs.service.UploadBatchProcessor;
+import kz.gov.rfs.service.UploadPrecompressor;
+import kz.gov.rfs.service.UploadStorageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 
 @Slf4j
@@ -20,27 +33,30 @@ import java.util.regex.Pattern;
 @RequiredArgsConstructor
 public class FileUploadController {
 
-    @Value("${file.upload-dir:uploads}")
-    private String uploadDir;
+    private final UploadStorageService uploadStorageService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final UploadPrecompressor uploadPrecompressor;
+    private final UploadBatchProcessor uploadBatchProcessor;
+    private final NewsService newsService;
+    private final AuditLogService auditLogService;
 
     @Value("${server.port:8080}")
     private String serverPort;
 
+    @Value("${upload.batch.max-files:50}")
+    private int maxBatchFiles;
+
+    // Тот же срок, что у UploadOrphanSweeper: свежезагруженный файл не удаляется
+    @Value("${upload.sweeper.grace-hours:24}")
+    private long graceHours;
+
     // Разрешенные расширения файлов
     private static final Set<String> ALLOWED_EXTENSIONS = Set.of(
             ".jpg", ".jpeg", ".png", ".gif", ".webp",
             ".pdf", ".doc", ".docx", ".xls", ".xlsx"
     );
 
-    // Разрешенные MIME типы
-    private static final Set<String> ALLOWED_MIME_TYPES = Set.of(
-            "image/jpeg", "image/png", "image/gif", "image/webp",
-            "application/pdf",
-            "application/msword",
-            "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
-            "application/vnd.ms-excel",
-            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"
-    );
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of(".jpg", ".jpeg", ".png", ".gif", ".webp");
 
     private static final long MAX_FILE_SIZE = 5 * 1024 * 1024; // 5MB
 
@@ -50,87 +66,183 @@ public class FileUploadController {
             Pattern.CASE_INSENSITIVE
     );
 
+    // Имя файла в хранилище по содержимому: sha256 + расширение
+    private static final Pattern CONTENT_HASH_PATTERN = Pattern.compile(
+            "^[0-9a-f]{64}\\.(jpg|jpeg|png|gif|webp|pdf|doc|docx|xls|xlsx)$",
+            Pattern.CASE_INSENSITIVE
+    );
+
     @PostMapping("/image")
     @PreAuthorize("hasAnyRole('ADMIN', 'NEWS_MANAGER', 'PROCUREMENT_MANAGER', 'ABOUT_MANAGER', 'SERVICES_MANAGER', 'CONTACTS_MANAGER')")
-    public ResponseEntity<Map<String, String>> uploadImage(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<Map<String, Object>> uploadImage(@RequestParam("file") MultipartFile file) {
         log.info("📤 Upload request: {}, {} bytes", file.getOriginalFilename(), file.getSize());
 
-        try {
-            // Валидация файла
-            if (file.isEmpty()) {
-                log.error("❌ File is empty");
-                return ResponseEntity.badRequest().body(Map.of("error", "File is empty"));
-            }
+        if (file.isEmpty()) {
+            log.error("❌ File is empty");
+            return ResponseEntity.badRequest().body(Map.of("error", "File is empty"));
+        }
+        try (InputStream inputStream = file.getInputStream()) {
+            return store(file.getOriginalFilename(), file.getSize(), inputStream);
+        } catch (IOException e) {
+            log.error("❌ Upload error", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Internal server error"));
+        }
+    }
 
-            if (file.getSize() > MAX_FILE_SIZE) {
-                log.error("❌ File size exceeds limit: {} bytes", file.getSize());
-                return ResponseEntity.badRequest().body(Map.of("error", "File size exceeds 5MB limit"));
-            }
+    /**
+     * Загрузка без multipart: тело запроса — сам файл, имя — в параметре filename.
+     * Поток пишется сразу в итоговую директорию, без временных файлов сервлет-контейнера
+     */
+    @PostMapping("/stream")
+    @PreAuthorize("hasAnyRole('ADMIN', 'NEWS_MANAGER', 'PROCUREMENT_MANAGER', 'ABOUT_MANAGER', 'SERVICES_MANAGER', 'CONTACTS_MANAGER')")
+    public ResponseEntity<Map<String, Object>> uploadStream(@RequestParam("filename") String filename,
+                                                            HttpServletRequest request) {
+        long declaredSize = request.getContentLengthLong();
+        log.info("📤 Stream upload request: {}, {} bytes", filename, declaredSize);
+
+        try (InputStream inputStream = request.getInputStream()) {
+            return store(filename, declaredSize, inputStream);
+        } catch (IOException e) {
+            log.error("❌ Upload error", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Internal server error"));
+        }
+    }
 
-            // Проверка MIME типа
-            String contentType = file.getContentType();
-            if (contentType == null || !ALLOWED_MIME_TYPES.contains(contentType.toLowerCase())) {
-                log.error("❌ Invalid MIME type: {}", contentType);
-                return ResponseEntity.badRequest().body(Map.of("error", "Invalid file type"));
-            }
+    /**
+     * Несколько файлов одним запросом (поле files), например для галереи новости.
+     * Файлы проверяются и сохраняются параллельно; результат — по каждому файлу в исходном порядке.
+     * С newsId успешно загруженные изображения добавляются в галерею новости одной транзакцией
+     */
+    @PostMapping("/batch")
+    @PreAuthorize("hasAnyRole('ADMIN', 'NEWS_MANAGER', 'PROCUREMENT_MANAGER', 'ABOUT_MANAGER', 'SERVICES_MANAGER', 'CONTACTS_MANAGER')")
+    public ResponseEntity<Map<String, Object>> uploadBatch(@RequestParam("files") List<MultipartFile> files,
+                                                           @RequestParam(value = "newsId", required = false) Long newsId,
+                                                           @AuthenticationPrincipal User user) {
+        log.info("📤 Batch upload request: {} files{}", files.size(), newsId != null ? " for news " + newsId : "");
 
-            // Безопасное извлечение расширения
-            String extension = extractAndValidateExtension(file.getOriginalFilename());
-            if (!ALLOWED_EXTENSIONS.contains(extension.toLowerCase())) {
-                log.error("❌ Invalid extension: {}", extension);
-                return ResponseEntity.badRequest().body(Map.of("error", "Invalid file extension"));
+        if (files.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "No files"));
+        }
+        if (files.size() > maxBatchFiles) {
+            log.error("❌ Too many files in batch: {}", files.size());
+            return ResponseEntity.badRequest().body(Map.of("error", "Too many files, maximum is " + maxBatchFiles));
+        }
+        if (newsId != null) {
+            // Галерея — как и сама новость — только для ADMIN и NEWS_MANAGER
+            if (user.getRole() != Role.ADMIN && user.getRole() != Role.NEWS_MANAGER) {
+                log.error("🚨 SECURITY: User {} cannot edit news galleries", user.getUsername());
+                return ResponseEntity.status(403).body(Map.of("error", "Access denied"));
             }
-
-            // Подготовка безопасного пути
-            Path uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
+            if (!newsService.newsExists(newsId)) {
+                return ResponseEntity.status(404).body(Map.of("error", "News not found"));
             }
+        }
 
-            // Генерация безопасного имени файла (UUID)
-            String safeFilename = UUID.randomUUID().toString() + extension.toLowerCase();
-            Path targetPath = uploadPath.resolve(safeFilename).normalize().toAbsolutePath();
+        List<Callable<Map<String, Object>>> tasks = new ArrayList<>();
+        for (MultipartFile file : files) {
+            tasks.add(() -> storeBatchFile(file, newsId != null));
+        }
+        List<Map<String, Object>> results = uploadBatchProcessor.runAll(tasks);
 
-            // Проверка Path Traversal
-            if (!targetPath.startsWith(uploadPath)) {
-                log.error("🚨 SECURITY: Path traversal detected");
-                return ResponseEntity.status(403).body(Map.of("error", "Security violation"));
+        List<String> urls = new ArrayList<>();
+        for (Map<String, Object> result : results) {
+            if (Integer.valueOf(200).equals(result.get("status"))) {
+                urls.add((String) result.get("url"));
             }
+        }
 
-            // Проверка что файл не существует (защита от перезаписи)
-            if (Files.exists(targetPath)) {
-                log.error("🚨 SECURITY: File already exists");
-                return ResponseEntity.internalServerError().body(Map.of("error", "File generation error"));
-            }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("files", results);
+        body.put("uploaded", urls.size());
+        body.put("failed", results.size() - urls.size());
+        if (newsId != null && !urls.isEmpty()) {
+            newsService.addGalleryImages(newsId, urls);
+            auditLogService.log(user, "UPDATE", "News", newsId, "Added " + urls.size() + " gallery images");
+            body.put("newsId", newsId);
+            body.put("attached", urls.size());
+        }
+        log.info("✅ Batch upload: {} uploaded, {} failed", urls.size(), results.size() - urls.size());
 
-            // Сохранение файла БЕЗ REPLACE_EXISTING
+        return urls.isEmpty() ? ResponseEntity.badRequest().body(body) : ResponseEntity.ok(body);
+    }
+
+    /**
+     * Один файл пакета: ошибки не прерывают пакет, а попадают в результат файла (status + error)
+     */
+    private Map<String, Object> storeBatchFile(MultipartFile file, boolean imagesOnly) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("originalFilename", file.getOriginalFilename());
+
+        ResponseEntity<Map<String, Object>> response;
+        if (file.isEmpty()) {
+            response = ResponseEntity.badRequest().body(Map.of("error", "File is empty"));
+        } else if (imagesOnly && !IMAGE_EXTENSIONS.contains(extensionOf(file.getOriginalFilename()))) {
+            response = ResponseEntity.badRequest().body(Map.of("error", "Only images can be added to a gallery"));
+        } else {
             try (InputStream inputStream = file.getInputStream()) {
-                Files.copy(inputStream, targetPath);
-            } catch (FileAlreadyExistsException e) {
-                log.error("🚨 File already exists (race condition)");
-                return ResponseEntity.internalServerError().body(Map.of("error", "File saving error"));
+                response = store(file.getOriginalFilename(), file.getSize(), inputStream);
+            } catch (Exception e) {
+                log.error("❌ Upload error: {}", file.getOriginalFilename(), e);
+                response = ResponseEntity.internalServerError().body(Map.of("error", "Internal server error"));
             }
+        }
 
-            // Проверка корректности сохранения
-            if (!Files.exists(targetPath) || Files.size(targetPath) != file.getSize()) {
-                log.error("❌ File verification failed");
-                Files.deleteIfExists(targetPath);
-                return ResponseEntity.internalServerError().body(Map.of("error", "Upload verification failed"));
-            }
+        result.put("status", response.getStatusCode().value());
+        if (response.getBody() != null) {
+            result.putAll(response.getBody());
+        }
+        return result;
+    }
 
-            String fileUrl = "/uploads/" + safeFilename;
-            log.info("✅ File uploaded: {}", fileUrl);
+    /**
+     * @param declaredSize размер от клиента (-1 — неизвестен); проверяется заранее, фактический — при записи
+     */
+    private ResponseEntity<Map<String, Object>> store(String originalFilename, long declaredSize, InputStream inputStream)
+            throws IOException {
+        if (declaredSize > MAX_FILE_SIZE) {
+            log.error("❌ File size exceeds limit: {} bytes", declaredSize);
+            return ResponseEntity.badRequest().body(Map.of("error", "File size exceeds 5MB limit"));
+        }
 
-            return ResponseEntity.ok(Map.of(
-                    "url", fileUrl,
-                    "imageUrl", fileUrl,
-                    "filename", safeFilename
-            ));
+        // Безопасное извлечение расширения
+        String extension;
+        try {
+            extension = extractAndValidateExtension(originalFilename);
+        } catch (SecurityException e) {
+            log.error("❌ Invalid filename: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid file extension"));
+        }
+        if (!ALLOWED_EXTENSIONS.contains(extension.toLowerCase())) {
+            log.error("❌ Invalid extension: {}", extension);
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid file extension"));
+        }
 
-        } catch (Exception e) {
-            log.error("❌ Upload error", e);
-            return ResponseEntity.internalServerError().body(Map.of("error", "Internal server error"));
+        // Тип определяется по содержимому, Content-Type от клиента не используется
+        UploadStorageService.StoredFile stored;
+        try {
+            stored = uploadStorageService.store(inputStream, extension, MAX_FILE_SIZE);
+        } catch (IllegalArgumentException e) {
+            log.error("❌ Upload rejected: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        String fileUrl = "/uploads/" + stored.key();
+        if (stored.duplicate()) {
+            log.info("✅ File already stored, reusing: {}", fileUrl);
+        } else {
+            log.info("✅ File uploaded: {} ({} bytes, {})", fileUrl, stored.size(), stored.contentType());
+            // Уменьшенные копии создаются в фоне; до их готовности по URL варианта отдаётся оригинал
+            imageDerivativeService.submit(stored.key());
+            uploadPrecompressor.submit(stored.key());
         }
+
+        return ResponseEntity.ok(Map.of(
+                "url", fileUrl,
+                "imageUrl", fileUrl,
+                "filename", stored.filename(),
+                "sha256", stored.sha256(),
+                "variants", imageDerivativeService.variantUrls(fileUrl)
+        ));
     }
 
     @DeleteMapping("/image")
@@ -145,8 +257,9 @@ public class FileUploadController {
                 return ResponseEntity.badRequest().body(Map.of("error", "Filename cannot be empty"));
             }
 
-            // Проверка UUID-паттерна (строгая проверка формата)
-            if (!UUID_PATTERN.matcher(filename.toLowerCase()).matches()) {
+            // Проверка формата имени (строгая): sha256 нового хранилища или UUID старых загрузок
+            boolean contentAddressed = CONTENT_HASH_PATTERN.matcher(filename.toLowerCase()).matches();
+            if (!contentAddressed && !UUID_PATTERN.matcher(filename.toLowerCase()).matches()) {
                 log.error("🚨 SECURITY: Invalid filename format: {}", filename);
                 return ResponseEntity.badRequest().body(Map.of("error", "Invalid filename format"));
             }
@@ -166,45 +279,44 @@ public class FileUploadController {
                 return ResponseEntity.status(403).body(Map.of("error", "Security violation"));
             }
 
-            // Построение безопасного пути
-            Path uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
-            Path targetPath = uploadPath.resolve(safeFilename).normalize().toAbsolutePath();
-
-            // Проверка Path Traversal
-            if (!targetPath.startsWith(uploadPath)) {
-                log.error("🚨 SECURITY: Path traversal in delete");
-                return ResponseEntity.status(403).body(Map.of("error", "Security violation"));
-            }
-
-            // Проверка родительской директории
-            Path parentPath = targetPath.getParent();
-            if (parentPath == null || !parentPath.equals(uploadPath)) {
-                log.error("🚨 SECURITY: Invalid parent directory");
-                return ResponseEntity.status(403).body(Map.of("error", "Security violation"));
+            // Файл, на который ещё ссылаются новости, сотрудники, закупки и т.д., не удаляем
+            String key = contentAddressed ? UploadStorageService.storageKey(safeFilename) : safeFilename;
+            if (uploadStorageService.countReferences(key) > 0) {
+                log.warn("⚠️ File is still referenced: {}", key);
+                return ResponseEntity.status(409).body(Map.of("error", "File is still in use"));
             }
 
-            // Проверка что это файл, а не директория/симлинк
-            if (Files.isDirectory(targetPath) || Files.isSymbolicLink(targetPath)) {
-                log.error("🚨 SECURITY: Attempt to delete non-file");
-                return ResponseEntity.status(403).body(Map.of("error", "Cannot delete directories"));
-            }
-
-            if (!Files.isRegularFile(targetPath)) {
-                log.error("🚨 SECURITY: Not a regular file");
-                return ResponseEntity.status(403).body(Map.of("error", "Not a regular file"));
+            if (contentAddressed) {
+                Instant lastUploaded = uploadStorageService.lastUploadedAt(key);
+                if (lastUploaded == null) {
+                    log.error("❌ File not found: {}", safeFilename);
+                    return ResponseEntity.status(404).body(Map.of("error", "File not found"));
+                }
+                // Свежий файл мог быть загружен (в том числе повторно, тем же содержимым) для несохранённой новости
+                Duration grace = Duration.ofHours(graceHours);
+                if (lastUploaded.isAfter(Instant.now().minus(grace))) {
+                    log.warn("⚠️ File was uploaded recently: {}", key);
+                    return ResponseEntity.status(409).body(Map.of("error", "File was uploaded recently"));
+                }
+                if (!uploadStorageService.deleteBlob(key, grace)) {
+                    log.warn("⚠️ File is in use or was uploaded again: {}", key);
+                    return ResponseEntity.status(409).body(Map.of("error", "File is still in use"));
+                }
+                log.info("✅ File deleted: {}", key);
+                return ResponseEntity.ok(Map.of("message", "File deleted successfully", "filename", safeFilename));
             }
 
-            // Удаление файла
+            // Старые загрузки (UUID) — в корне хранилища, без учёта в upload_blobs.
+            // Выход за пределы хранилища, директории и симлинки отсекает BlobStore
             try {
-                Files.delete(targetPath);
+                if (!uploadStorageService.deleteFile(safeFilename)) {
+                    log.error("❌ File not found: {}", safeFilename);
+                    return ResponseEntity.status(404).body(Map.of("error", "File not found"));
+                }
                 log.info("✅ File deleted: {}", safeFilename);
                 return ResponseEntity.ok(Map.of("message", "File deleted successfully", "filename", safeFilename));
-            } catch (NoSuchFileException e) {
-                log.error("❌ File not found: {}", safeFilename);
-                return ResponseEntity.status(404).body(Map.of("error", "File not found"));
-            } catch (DirectoryNotEmptyException e) {
-                log.error("🚨 SECURITY: Attempt to delete directory");
-                return ResponseEntity.status(403).body(Map.of("error", "Cannot delete directories"));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(403).body(Map.of("error", "Security violation"));
             }
 
         } catch (Exception e) {
@@ -213,10 +325,18 @@ public class FileUploadController {
         }
     }
 
+    private String extensionOf(String originalFilename) {
+        try {
+            return extractAndValidateExtension(originalFilename).toLowerCase();
+        } catch (SecurityException e) {
+            return "";
+        }
+    }
+
     /**
      * Безопасное извлечение расширения файла
      */
-    private String extractAndValidateExtension(String originalFilename) {
+    static String extractAndValidateExtension(String originalFilename) {
         if (originalFilename == null || originalFilename.trim().isEmpty()) {
             throw new SecurityException("Filename is empty");
         }
@@ -1,10 +1,15 @@
 package kz.gov.rfs.controller;
 
+import kz.gov.rfs.dto.CursorPage;
+import kz.gov.rfs.dto.NewsSearchResult;
+import kz.gov.rfs.dto.NewsSummary;
 import kz.gov.rfs.entity.News;
 import kz.gov.rfs.entity.NewsType;
 import kz.gov.rfs.entity.User;
 import kz.gov.rfs.service.AuditLogService;
+import kz.gov.rfs.service.ContentCollection;
 import kz.gov.rfs.service.NewsService;
+import kz.gov.rfs.service.NewsViewCounter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -13,6 +18,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import jakarta.validation.Valid;
 import java.util.List;
 
@@ -22,60 +28,97 @@ import java.util.List;
 public class NewsController {
     private final NewsService newsService;
     private final AuditLogService auditLogService;
+    private final NewsViewCounter newsViewCounter;
+    private final ConditionalGet conditionalGet;
 
     // Публичные эндпоинты (доступны всем)
+    // Списки отдают NewsSummary; ?lang=ru|kk|en — только колонки выбранного языка
     @GetMapping
-    public ResponseEntity<Page<News>> getAllNews(
+    public ResponseEntity<Page<NewsSummary>> getAllNews(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String lang,
+            WebRequest request) {
         Pageable pageable = PageRequest.of(page, size);
-        return ResponseEntity.ok(newsService.getAllActiveNews(pageable));
+        return conditionalGet.collection(request, "news", ContentCollection.NEWS,
+                () -> newsService.getAllActiveNews(NewsService.resolveLanguage(lang), pageable));
+    }
+
+    // Keyset-режим для бесконечной ленты: ?after= (первая страница) или ?after={nextCursor}
+    @GetMapping(params = "after")
+    public ResponseEntity<CursorPage<NewsSummary>> getAllNewsAfter(
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String lang,
+            WebRequest request) {
+        return conditionalGet.collection(request, "news", ContentCollection.NEWS,
+                () -> newsService.getActiveNewsAfter(NewsService.resolveLanguage(lang), after, size));
     }
 
     @GetMapping("/type/{type}")
-    public ResponseEntity<Page<News>> getNewsByType(
+    public ResponseEntity<Page<NewsSummary>> getNewsByType(
             @PathVariable String type,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String lang,
+            WebRequest request) {
         NewsType newsType = NewsType.valueOf(type.toUpperCase());
         Pageable pageable = PageRequest.of(page, size);
-        return ResponseEntity.ok(newsService.getAllActiveNewsByType(newsType, pageable));
+        return conditionalGet.collection(request, "news", ContentCollection.NEWS,
+                () -> newsService.getAllActiveNewsByType(newsType, NewsService.resolveLanguage(lang), pageable));
     }
 
     @GetMapping("/latest")
-    public ResponseEntity<List<News>> getLatestNews() {
-        return ResponseEntity.ok(newsService.getLatestNews());
+    public ResponseEntity<List<NewsSummary>> getLatestNews(
+            @RequestParam(required = false) String lang,
+            WebRequest request) {
+        return conditionalGet.collection(request, "news-latest", ContentCollection.NEWS,
+                () -> newsService.getLatestNews(NewsService.resolveLanguage(lang)));
     }
 
     @GetMapping("/latest/{type}")
-    public ResponseEntity<List<News>> getLatestNewsByType(@PathVariable String type) {
+    public ResponseEntity<List<NewsSummary>> getLatestNewsByType(
+            @PathVariable String type,
+            @RequestParam(required = false) String lang,
+            WebRequest request) {
         NewsType newsType = NewsType.valueOf(type.toUpperCase());
-        return ResponseEntity.ok(newsService.getLatestNewsByType(newsType));
+        return conditionalGet.collection(request, "news-latest", ContentCollection.NEWS,
+                () -> newsService.getLatestNewsByType(newsType, NewsService.resolveLanguage(lang)));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<News> getNewsById(@PathVariable Long id) {
-        return ResponseEntity.ok(newsService.getNewsById(id));
+    public ResponseEntity<News> getNewsById(@PathVariable Long id, WebRequest request) {
+        ResponseEntity<News> response = conditionalGet.item(request, "news-item", ContentCollection.NEWS, id,
+                () -> newsService.getNewsById(id));
+        // Просмотр засчитывается и при ответе 304
+        newsViewCounter.recordView(id);
+        return response;
     }
 
     @GetMapping("/search")
-    public ResponseEntity<Page<News>> searchNews(
+    public ResponseEntity<Page<NewsSearchResult>> searchNews(
             @RequestParam String keyword,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String lang,
+            WebRequest request) {
         Pageable pageable = PageRequest.of(page, size);
-        return ResponseEntity.ok(newsService.searchNews(keyword, pageable));
+        return conditionalGet.collection(request, "news-search", ContentCollection.NEWS,
+                () -> newsService.searchNews(keyword, NewsService.resolveLanguage(lang), pageable));
     }
 
     @GetMapping("/search/{type}")
-    public ResponseEntity<Page<News>> searchNewsByType(
+    public ResponseEntity<Page<NewsSearchResult>> searchNewsByType(
             @PathVariable String type,
             @RequestParam String keyword,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String lang,
+            WebRequest request) {
         NewsType newsType = NewsType.valueOf(type.toUpperCase());
         Pageable pageable = PageRequest.of(page, size);
-        return ResponseEntity.ok(newsService.searchNewsByType(keyword, newsType, pageable));
+        return conditionalGet.collection(request, "news-search", ContentCollection.NEWS,
+                () -> newsService.searchNewsByType(keyword, newsType, NewsService.resolveLanguage(lang), pageable));
     }
 
     // Защищенные эндпоинты (только для ADMIN и NEWS_MANAGER)
@@ -1,9 +1,11 @@
 package kz.gov.rfs.controller;
 
+import kz.gov.rfs.dto.CursorPage;
 import kz.gov.rfs.entity.Procurement;
 import kz.gov.rfs.entity.ProcurementType;
 import kz.gov.rfs.entity.User;
 import kz.gov.rfs.service.AuditLogService;
+import kz.gov.rfs.service.ContentCollection;
 import kz.gov.rfs.service.ProcurementService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +16,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import jakarta.validation.Valid;
 import java.util.List;
 
@@ -24,28 +27,45 @@ import java.util.List;
 public class ProcurementController {
     private final ProcurementService procurementService;
     private final AuditLogService auditLogService;
+    private final ConditionalGet conditionalGet;
 
     @GetMapping
     public ResponseEntity<Page<Procurement>> getAllProcurements(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            WebRequest request) {
         Pageable pageable = PageRequest.of(page, size);
-        return ResponseEntity.ok(procurementService.getAllActiveProcurements(pageable));
+        return conditionalGet.collection(request, "procurements", ContentCollection.PROCUREMENTS,
+                () -> procurementService.getAllActiveProcurements(pageable));
+    }
+
+    // Keyset-режим: ?after= (первая страница) или ?after={nextCursor}
+    @GetMapping(params = "after")
+    public ResponseEntity<CursorPage<Procurement>> getAllProcurementsAfter(
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size,
+            WebRequest request) {
+        return conditionalGet.collection(request, "procurements", ContentCollection.PROCUREMENTS,
+                () -> procurementService.getActiveProcurementsAfter(after, size));
     }
 
     @GetMapping("/year/{year}")
-    public ResponseEntity<List<Procurement>> getProcurementsByYear(@PathVariable Integer year) {
-        return ResponseEntity.ok(procurementService.getProcurementsByYear(year));
+    public ResponseEntity<List<Procurement>> getProcurementsByYear(@PathVariable Integer year, WebRequest request) {
+        return conditionalGet.collection(request, "procurements", ContentCollection.PROCUREMENTS,
+                () -> procurementService.getProcurementsByYear(year));
     }
 
     @GetMapping("/type/{type}")
-    public ResponseEntity<List<Procurement>> getProcurementsByType(@PathVariable ProcurementType type) {
-        return ResponseEntity.ok(procurementService.getProcurementsByType(type));
+    public ResponseEntity<List<Procurement>> getProcurementsByType(@PathVariable ProcurementType type,
+                                                                   WebRequest request) {
+        return conditionalGet.collection(request, "procurements", ContentCollection.PROCUREMENTS,
+                () -> procurementService.getProcurementsByType(type));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Procurement> getProcurementById(@PathVariable Long id) {
-        return ResponseEntity.ok(procurementService.getProcurementById(id));
+    public ResponseEntity<Procurement> getProcurementById(@PathVariable Long id, WebRequest request) {
+        return conditionalGet.item(request, "procurements", ContentCollection.PROCUREMENTS, id,
+                () -> procurementService.getProcurementById(id));
     }
 
     @PostMapping
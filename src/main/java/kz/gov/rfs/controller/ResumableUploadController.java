@@ -0,0 +1,131 @@
+package kz.gov.rfs.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import kz.gov.rfs.entity.User;
+import kz.gov.rfs.service.ResumableUploadService;
+import kz.gov.rfs.service.UploadPrecompressor;
+import kz.gov.rfs.service.UploadStorageService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Возобновляемая загрузка больших документов (тендерная документация закупок, файлы документов).
+ *
+ * 1. POST /api/upload/sessions?filename=&amp;size= — создать сессию, ответ: id и offset = 0
+ * 2. PATCH /api/upload/sessions/{id} c заголовком Upload-Offset, тело — очередная часть как есть
+ *    (не multipart), необязательный X-Chunk-Sha256. Ответ — новый offset
+ * 3. После обрыва: GET /api/upload/sessions/{id} — подтверждённый offset, продолжить с него
+ * 4. POST /api/upload/sessions/{id}/complete?sha256= — файл переносится в хранилище, ответ как у /api/upload/image
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/upload/sessions")
+@RequiredArgsConstructor
+public class ResumableUploadController {
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    // Частями загружаются только документы; изображения — через /api/upload/image
+    private static final Set<String> DOCUMENT_EXTENSIONS = Set.of(".pdf", ".doc", ".docx", ".xls", ".xlsx");
+
+    private final ResumableUploadService resumableUploadService;
+    private final UploadPrecompressor uploadPrecompressor;
+
+    @PostMapping
+    @PreAuthorize("hasAnyRole('ADMIN', 'NEWS_MANAGER', 'PROCUREMENT_MANAGER', 'ABOUT_MANAGER', 'SERVICES_MANAGER', 'CONTACTS_MANAGER')")
+    public ResponseEntity<Map<String, Object>> create(@RequestParam("filename") String filename,
+                                                      @RequestParam("size") long size,
+                                                      @AuthenticationPrincipal User user) throws IOException {
+        String extension;
+        try {
+            extension = FileUploadController.extractAndValidateExtension(filename).toLowerCase();
+        } catch (SecurityException e) {
+            log.error("❌ Invalid filename: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid file extension"));
+        }
+        if (!DOCUMENT_EXTENSIONS.contains(extension)) {
+            log.error("❌ Invalid extension for resumable upload: {}", extension);
+            return ResponseEntity.badRequest().body(Map.of("error", "Only documents can be uploaded in chunks"));
+        }
+
+        ResumableUploadService.SessionState state = resumableUploadService.create(user.getUsername(), extension, size);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(UPLOAD_OFFSET, String.valueOf(state.offset()))
+                .body(body(state));
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'NEWS_MANAGER', 'PROCUREMENT_MANAGER', 'ABOUT_MANAGER', 'SERVICES_MANAGER', 'CONTACTS_MANAGER')")
+    public ResponseEntity<Map<String, Object>> status(@PathVariable String id,
+                                                      @AuthenticationPrincipal User user) throws IOException {
+        ResumableUploadService.SessionState state = resumableUploadService.get(id, user.getUsername());
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, String.valueOf(state.offset()))
+                .body(body(state));
+    }
+
+    @PatchMapping("/{id}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'NEWS_MANAGER', 'PROCUREMENT_MANAGER', 'ABOUT_MANAGER', 'SERVICES_MANAGER', 'CONTACTS_MANAGER')")
+    public ResponseEntity<Map<String, Object>> append(@PathVariable String id,
+                                                      @RequestHeader(UPLOAD_OFFSET) long offset,
+                                                      @RequestHeader(value = "X-Chunk-Sha256", required = false) String chunkSha256,
+                                                      @AuthenticationPrincipal User user,
+                                                      HttpServletRequest request) throws IOException {
+        ResumableUploadService.SessionState state;
+        try (InputStream chunk = request.getInputStream()) {
+            state = resumableUploadService.append(id, user.getUsername(), offset, chunk, chunkSha256);
+        }
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, String.valueOf(state.offset()))
+                .body(body(state));
+    }
+
+    @PostMapping("/{id}/complete")
+    @PreAuthorize("hasAnyRole('ADMIN', 'NEWS_MANAGER', 'PROCUREMENT_MANAGER', 'ABOUT_MANAGER', 'SERVICES_MANAGER', 'CONTACTS_MANAGER')")
+    public ResponseEntity<Map<String, Object>> complete(@PathVariable String id,
+                                                        @RequestParam(value = "sha256", required = false) String sha256,
+                                                        @AuthenticationPrincipal User user) throws IOException {
+        UploadStorageService.StoredFile stored = resumableUploadService.complete(id, user.getUsername(), sha256);
+
+        String fileUrl = "/uploads/" + stored.key();
+        if (stored.duplicate()) {
+            log.info("✅ File already stored, reusing: {}", fileUrl);
+        } else {
+            log.info("✅ File uploaded: {} ({} bytes, {})", fileUrl, stored.size(), stored.contentType());
+            uploadPrecompressor.submit(stored.key());
+        }
+
+        return ResponseEntity.ok(Map.of(
+                "url", fileUrl,
+                "filename", stored.filename(),
+                "sha256", stored.sha256(),
+                "size", stored.size()
+        ));
+    }
+
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'NEWS_MANAGER', 'PROCUREMENT_MANAGER', 'ABOUT_MANAGER', 'SERVICES_MANAGER', 'CONTACTS_MANAGER')")
+    public ResponseEntity<Void> abort(@PathVariable String id, @AuthenticationPrincipal User user) throws IOException {
+        resumableUploadService.abort(id, user.getUsername());
+        return ResponseEntity.noContent().build();
+    }
+
+    private static Map<String, Object> body(ResumableUploadService.SessionState state) {
+        return Map.of(
+                "id", state.id(),
+                "size", state.size(),
+                "offset", state.offset(),
+                "expiresAt", state.expiresAt().toString()
+        );
+    }
+}
@@ -4,6 +4,7 @@ import kz.gov.rfs.entity.Service;
 import kz.gov.rfs.entity.ServiceType;
 import kz.gov.rfs.entity.User;
 import kz.gov.rfs.service.AuditLogService;
+import kz.gov.rfs.service.ContentCollection;
 import kz.gov.rfs.service.ServiceService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,6 +12,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import jakarta.validation.Valid;
 import java.util.List;
 
@@ -21,20 +23,24 @@ import java.util.List;
 public class ServiceController {
     private final ServiceService serviceService;
     private final AuditLogService auditLogService;
+    private final ConditionalGet conditionalGet;
 
     @GetMapping
-    public ResponseEntity<List<Service>> getAllServices() {
-        return ResponseEntity.ok(serviceService.getAllActiveServices());
+    public ResponseEntity<List<Service>> getAllServices(WebRequest request) {
+        return conditionalGet.collection(request, "services", ContentCollection.SERVICES,
+                serviceService::getAllActiveServices);
     }
 
     @GetMapping("/type/{type}")
-    public ResponseEntity<List<Service>> getServicesByType(@PathVariable ServiceType type) {
-        return ResponseEntity.ok(serviceService.getServicesByType(type));
+    public ResponseEntity<List<Service>> getServicesByType(@PathVariable ServiceType type, WebRequest request) {
+        return conditionalGet.collection(request, "services", ContentCollection.SERVICES,
+                () -> serviceService.getServicesByType(type));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Service> getServiceById(@PathVariable Long id) {
-        return ResponseEntity.ok(serviceService.getServiceById(id));
+    public ResponseEntity<Service> getServiceById(@PathVariable Long id, WebRequest request) {
+        return conditionalGet.item(request, "services", ContentCollection.SERVICES, id,
+                () -> serviceService.getServiceById(id));
     }
 
     @PostMapping
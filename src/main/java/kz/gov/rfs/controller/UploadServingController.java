@@ -0,0 +1,271 @@
+package kz.gov.rfs.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import kz.gov.rfs.service.BlobStore;
+import kz.gov.rfs.service.ImageDerivativeService;
+import kz.gov.rfs.service.UploadPrecompressor;
+import kz.gov.rfs.util.FileSignature;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Отдача загруженных файлов (/uploads/**).
+ *
+ * Файлы не меняются после загрузки (имя — sha256 содержимого или UUID), поэтому:
+ * ETag — имя файла, Cache-Control: immutable на год. Поддерживаются Range (один диапазон) и If-Range.
+ * Тело отдаёт Tomcat через sendfile: поток запроса освобождается сразу, не дожидаясь передачи файла.
+ * Для документов при Accept-Encoding отдаются готовые name.pdf.br / name.pdf.gz (только целиком, без Range).
+ * Если файлы не на локальном диске (S3), клиент получает redirect на presigned URL и качает из хранилища.
+ */
+@Controller
+@RequiredArgsConstructor
+public class UploadServingController {
+
+    private static final String PREFIX = "/uploads/";
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    // Вариант изображения ещё не готов — отдаём оригинал, но ненадолго
+    private static final String FALLBACK = "public, max-age=60";
+
+    // ab/cd/<sha256>.ext, <sha256>-thumb.jpg, <uuid>.ext — без "..", слэшей в имени и скрытых файлов
+    private static final Pattern FILE_PATH = Pattern.compile("^(?:[0-9a-f]{2}/[0-9a-f]{2}/)?[0-9A-Za-z][0-9A-Za-z-]*\\.[0-9A-Za-z]{2,5}$");
+    private static final Pattern IMAGE_VARIANT = Pattern.compile("^(.+)-(thumb|medium|large)(\\.(?i:jpg|jpeg|png))$");
+    private static final Pattern RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final BlobStore blobStore;
+    private final ImageDerivativeService imageDerivativeService;
+
+    // Есть ли вариант изображения в удалённом хранилище: не проверяем HEAD-запросом каждый раз.
+    // Отсутствие помним столько же, сколько кешируется отданный вместо варианта оригинал
+    private final Cache<String, Boolean> knownVariants = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfter(Expiry.<String, Boolean>writing((key, exists) ->
+                    exists ? Duration.ofMinutes(10) : Duration.ofSeconds(60)))
+            .build();
+
+    @RequestMapping(value = "/uploads/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String relative = request.getRequestURI().substring(request.getContextPath().length());
+        if (!relative.startsWith(PREFIX)) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        relative = relative.substring(PREFIX.length());
+        if (!FILE_PATH.matcher(relative).matches()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        Path file = blobStore.localPath(relative);
+        if (file == null) {
+            redirect(relative, response);
+            return;
+        }
+        String cacheControl = IMMUTABLE;
+        BasicFileAttributes attributes = readAttributes(file);
+        if (attributes == null) {
+            Matcher variant = IMAGE_VARIANT.matcher(relative);
+            if (variant.matches()) {
+                String original = variant.group(1) + variant.group(3);
+                file = blobStore.localPath(original);
+                attributes = readAttributes(file);
+                cacheControl = FALLBACK;
+                if (attributes != null) {
+                    // Генерация могла быть пропущена (очередь была полна, рестарт)
+                    imageDerivativeService.submitMissing(original);
+                }
+            }
+        }
+        if (attributes == null || !attributes.isRegularFile()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        String fileName = file.getFileName().toString();
+        String contentType = FileSignature.contentType(fileName.substring(fileName.lastIndexOf('.')));
+        String baseTag = fileName.substring(0, fileName.lastIndexOf('.'));
+
+        // Готовая сжатая копия — только для запроса целого файла: при Range отдаётся диапазон исходного файла
+        String encoding = null;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (UploadPrecompressor.isServedPrecompressed(fileName)) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            String acceptEncoding = range == null ? request.getHeader(HttpHeaders.ACCEPT_ENCODING) : null;
+            for (String candidate : UploadPrecompressor.ENCODINGS) {
+                if (accepts(acceptEncoding, candidate)) {
+                    Path sibling = UploadPrecompressor.sibling(file, candidate);
+                    BasicFileAttributes siblingAttributes = readAttributes(sibling);
+                    if (siblingAttributes != null && siblingAttributes.isRegularFile()) {
+                        file = sibling;
+                        attributes = siblingAttributes;
+                        encoding = candidate;
+                        break;
+                    }
+                }
+            }
+        }
+
+        String etag = "\"" + baseTag + (encoding != null ? "-" + encoding : "") + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        long length = attributes.size();
+        long start = 0;
+        long end = length; // не включая
+        response.setContentType(contentType != null ? contentType : "application/octet-stream");
+        // Диапазоны поддерживаются всегда: запрос с Range получит исходный файл
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (encoding != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+        } else {
+            String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+            if (range != null && (ifRange == null || ifRange.equals(etag))) {
+                Matcher matcher = RANGE.matcher(range.trim());
+                // Несколько диапазонов не поддерживаем — по RFC 9110 можно ответить целым файлом
+                if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                    if (matcher.group(1).isEmpty()) {
+                        // bytes=-N — последние N байт
+                        start = Math.max(0, length - parseLong(matcher.group(2)));
+                    } else {
+                        start = parseLong(matcher.group(1));
+                        if (!matcher.group(2).isEmpty()) {
+                            end = Math.min(length - 1, parseLong(matcher.group(2))) + 1;
+                        }
+                    }
+                    if (start >= length || start >= end) {
+                        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                        response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                        return;
+                    }
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+                }
+            }
+        }
+        response.setContentLengthLong(end - start);
+
+        if (RequestMethod.HEAD.name().equals(request.getMethod())) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        transfer(file, start, end, response.getOutputStream());
+    }
+
+    /**
+     * Redirect на объект в хранилище. Наличие оригинала не проверяется (нет — хранилище ответит 404),
+     * вариант изображения проверяется, чтобы до его готовности отдать оригинал
+     */
+    private void redirect(String key, HttpServletResponse response) throws IOException {
+        String cacheControl = IMMUTABLE;
+        Matcher variant = IMAGE_VARIANT.matcher(key);
+        if (variant.matches()) {
+            Boolean exists = knownVariants.getIfPresent(key);
+            if (exists == null) {
+                exists = blobStore.exists(key);
+                knownVariants.put(key, exists);
+            }
+            if (!exists) {
+                key = variant.group(1) + variant.group(3);
+                cacheControl = FALLBACK;
+                imageDerivativeService.submitMissing(key);
+            }
+        }
+
+        BlobStore.DirectLink link = blobStore.directLink(key, cacheControl);
+        if (link == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        // Сам redirect кешируется, пока ссылка гарантированно действительна
+        long maxAge = cacheControl.equals(FALLBACK) ? 0 : link.cacheFor().toSeconds();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, maxAge > 0 ? "private, max-age=" + maxAge : "no-cache");
+        response.setStatus(HttpStatus.FOUND.value());
+        response.setHeader(HttpHeaders.LOCATION, link.uri().toString());
+    }
+
+    /**
+     * Без sendfile (другой контейнер или TLS) — transferTo, без промежуточного буфера в куче где возможно
+     */
+    private static void transfer(Path file, long start, long end, OutputStream output) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(output);
+            long position = start;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static boolean accepts(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (!tokens[0].trim().equalsIgnoreCase(encoding)) {
+                continue;
+            }
+            for (int i = 1; i < tokens.length; i++) {
+                if (tokens[i].trim().replace(" ", "").matches("q=0(\\.0*)?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
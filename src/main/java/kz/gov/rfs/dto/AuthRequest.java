@@ -1,11 +1,13 @@
 package kz.gov.rfs.dto;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
 @Data
 public class AuthRequest {
     @NotBlank(message = "Username is required")
+    @Size(max = 255, message = "Username must not exceed 255 characters")
     private String username;
 
     @NotBlank(message = "Password is required")
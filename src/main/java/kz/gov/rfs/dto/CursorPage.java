@@ -0,0 +1,29 @@
+package kz.gov.rfs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница keyset-пагинации: без totalElements, следующий запрос — ?after={nextCursor}
+ */
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+
+    /**
+     * rows запрашиваются с запасом в одну запись: её наличие означает, что есть следующая страница
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, Function<T, String> cursorOf) {
+        if (rows.size() <= size) {
+            return new CursorPage<>(rows, size, null);
+        }
+        List<T> content = List.copyOf(rows.subList(0, size));
+        return new CursorPage<>(content, size, cursorOf.apply(content.get(size - 1)));
+    }
+}
@@ -0,0 +1,40 @@
+package kz.gov.rfs.dto;
+
+import kz.gov.rfs.entity.NewsType;
+import java.time.LocalDateTime;
+
+/**
+ * Результат полнотекстового поиска новостей: карточка новости, релевантность
+ * и фрагменты текста с подсвеченными совпадениями (&lt;b&gt;...&lt;/b&gt;).
+ */
+public interface NewsSearchResult {
+    Long getId();
+
+    String getTitleRu();
+
+    String getTitleKk();
+
+    String getTitleEn();
+
+    String getShortDescriptionRu();
+
+    String getShortDescriptionKk();
+
+    String getShortDescriptionEn();
+
+    String getImageUrl();
+
+    LocalDateTime getPublishedDate();
+
+    NewsType getNewsType();
+
+    Integer getViewCount();
+
+    Double getRank();
+
+    String getHeadlineRu();
+
+    String getHeadlineKk();
+
+    String getHeadlineEn();
+}
@@ -0,0 +1,29 @@
+package kz.gov.rfs.dto;
+
+import kz.gov.rfs.entity.NewsType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Карточка новости для списков: без TEXT-колонок content*.
+ * При запросе с ?lang= заполнены только поля выбранного языка (null-поля не сериализуются).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NewsSummary {
+    private Long id;
+    private String titleRu;
+    private String titleKk;
+    private String titleEn;
+    private String shortDescriptionRu;
+    private String shortDescriptionKk;
+    private String shortDescriptionEn;
+    private String imageUrl;
+    private LocalDateTime publishedDate;
+    private NewsType newsType;
+    private Integer viewCount;
+}
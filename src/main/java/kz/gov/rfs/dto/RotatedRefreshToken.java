@@ -0,0 +1,19 @@
+package kz.gov.rfs.dto;
+
+/**
+ * Результат ротации refresh-токена: всё, что нужно для нового access-токена и ответа,
+ * без отдельной загрузки пользователя.
+ */
+public interface RotatedRefreshToken {
+    Long getUserId();
+
+    String getUsername();
+
+    String getEmail();
+
+    String getRole();
+
+    Integer getTokenVersion();
+
+    String getFamilyId();
+}
@@ -8,7 +8,12 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "audit_logs")
+// Партиционирована по месяцам по timestamp (db/audit-log-partitions.sql), PK = (id, timestamp)
+@Table(name = "audit_logs", indexes = {
+        @Index(name = "idx_audit_log_timestamp", columnList = "timestamp,id"),
+        @Index(name = "idx_audit_log_user_timestamp", columnList = "user_id,timestamp"),
+        @Index(name = "idx_audit_log_entity_timestamp", columnList = "entityType,entityId,timestamp")
+})
 public class AuditLog {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -16,7 +16,7 @@ import java.util.List;
 @Table(name = "news", indexes = {
         @Index(name = "idx_news_published_date", columnList = "publishedDate"),
         @Index(name = "idx_news_is_active", columnList = "isActive"),
-        @Index(name = "idx_news_active_date", columnList = "isActive,publishedDate"),
+        @Index(name = "idx_news_active_date", columnList = "isActive,publishedDate,id"),
         @Index(name = "idx_news_type", columnList = "newsType")
 })
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "newsCache")
@@ -76,7 +76,8 @@ public class News {
     @Column(columnDefinition = "TEXT")
     private String shortDescriptionEn;
 
-    @Column(nullable = false)
+    // Обновляется только через NewsViewCounter (UPDATE view_count = view_count + ?)
+    @Column(nullable = false, updatable = false)
     private Integer viewCount = 0;
 
     @Column(updatable = false)
@@ -109,8 +110,4 @@ public class News {
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
     }
-
-    public void incrementViewCount() {
-        this.viewCount++;
-    }
 }
\ No newline at end of file
@@ -4,12 +4,16 @@ import jakarta.persistence.*;
 import lombok.Data;
 import java.time.Instant;
 
+/**
+ * Сессия пользователя (устройство). Сам refresh-токен не хранится — только его SHA-256
+ */
 @Data
 @Entity
 @Table(name = "refresh_tokens", indexes = {
-        @Index(name = "idx_refresh_token", columnList = "token"),
+        @Index(name = "idx_refresh_token_hash", columnList = "tokenHash", unique = true),
         @Index(name = "idx_refresh_token_user", columnList = "user_id"),
-        @Index(name = "idx_refresh_token_expiry", columnList = "expiryDate")
+        @Index(name = "idx_refresh_token_expiry", columnList = "expiryDate"),
+        @Index(name = "idx_refresh_token_family", columnList = "familyId", unique = true)
 })
 public class RefreshToken {
     @Id
@@ -17,13 +21,32 @@ public class RefreshToken {
     private Long id;
 
     // КРИТИЧЕСКОЕ ИСПРАВЛЕНИЕ: убрали CascadeType.ALL и orphanRemoval
-    @OneToOne
-    @JoinColumn(name = "user_id", referencedColumnName = "id", nullable = false, unique = true)
+    @ManyToOne
+    @JoinColumn(name = "user_id", referencedColumnName = "id", nullable = false)
     private User user;
 
-    @Column(nullable = false, unique = true, length = 500)
-    private String token;
+    @Column(nullable = false, unique = true, length = 64)
+    private String tokenHash;
 
     @Column(nullable = false)
     private Instant expiryDate;
-}
\ No newline at end of file
+
+    // Все ротации одного входа; хэши заменённых токенов — в refresh_token_used.
+    // При повторном использовании любого из них семейство отзывается
+    @Column(nullable = false, length = 36)
+    private String familyId;
+
+    private Instant rotatedAt;
+
+    // User-Agent устройства
+    private String deviceName;
+
+    @Column(length = 45)
+    private String ipAddress;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant lastUsedAt;
+}
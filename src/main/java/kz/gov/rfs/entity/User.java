@@ -43,11 +43,19 @@ public class User implements UserDetails {
 
     private LocalDateTime lastLogin;
 
+    // Увеличивается при отзыве всех access-токенов пользователя
+    @Column(nullable = false)
+    private Integer tokenVersion = 0;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
     }
 
+    public void revokeTokens() {
+        tokenVersion = tokenVersion + 1;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
@@ -4,6 +4,8 @@ import kz.gov.rfs.entity.AuditLog;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -12,6 +14,16 @@ import java.util.List;
 public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
     Page<AuditLog> findAllByOrderByTimestampDesc(Pageable pageable);
 
+    // Keyset-пагинация по idx_audit_log_timestamp (timestamp, id)
+    @Query("SELECT a FROM AuditLog a ORDER BY a.timestamp DESC, a.id DESC")
+    List<AuditLog> findLatestFirst(Pageable limit);
+
+    // Сравнение пар — граница диапазона индекса; a.timestamp <= :timestamp отсекает более новые партиции
+    @Query("SELECT a FROM AuditLog a WHERE " +
+            "(a.timestamp, a.id) < (:timestamp, :id) AND a.timestamp <= :timestamp " +
+            "ORDER BY a.timestamp DESC, a.id DESC")
+    List<AuditLog> findLatestAfter(@Param("timestamp") LocalDateTime timestamp, @Param("id") Long id, Pageable limit);
+
     List<AuditLog> findByUserIdOrderByTimestampDesc(Long userId);
 
     List<AuditLog> findByEntityTypeAndEntityIdOrderByTimestampDesc(String entityType, Long entityId);
@@ -1,5 +1,7 @@
 package kz.gov.rfs.repository;
 
+import kz.gov.rfs.dto.NewsSearchResult;
+import kz.gov.rfs.dto.NewsSummary;
 import kz.gov.rfs.entity.News;
 import kz.gov.rfs.entity.NewsType;
 import org.springframework.data.domain.Page;
@@ -8,42 +10,89 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface NewsRepository extends JpaRepository<News, Long> {
 
     // Базовые запросы
-    Page<News> findByIsActiveTrueOrderByPublishedDateDesc(Pageable pageable);
-    Page<News> findByIsActiveTrueAndNewsTypeOrderByPublishedDateDesc(NewsType newsType, Pageable pageable);
-    List<News> findTop5ByIsActiveTrueOrderByPublishedDateDesc();
-    List<News> findTop5ByIsActiveTrueAndNewsTypeOrderByPublishedDateDesc(NewsType newsType);
     List<News> findTopByIsActiveTrueOrderByViewCountDesc(Pageable pageable);
     Long countByIsActive(Boolean isActive);
 
-    @Query("SELECT n FROM News n WHERE n.isActive = true AND " +
-            "(LOWER(n.titleRu) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.titleKk) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.titleEn) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.contentRu) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.contentKk) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.contentEn) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.shortDescriptionRu) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.shortDescriptionKk) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.shortDescriptionEn) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
-            "ORDER BY n.publishedDate DESC")
-    Page<News> searchNews(@Param("keyword") String keyword, Pageable pageable);
-
-    @Query("SELECT n FROM News n WHERE n.isActive = true AND n.newsType = :newsType AND " +
-            "(LOWER(n.titleRu) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.titleKk) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.titleEn) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.contentRu) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.contentKk) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.contentEn) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.shortDescriptionRu) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.shortDescriptionKk) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(n.shortDescriptionEn) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
-            "ORDER BY n.publishedDate DESC")
-    Page<News> searchNewsByType(@Param("keyword") String keyword, @Param("newsType") NewsType newsType, Pageable pageable);
+    // Списки отдают NewsSummary без content*. :lang — 'ru' / 'kk' / 'en' или 'all' (все языки)
+    String SUMMARY_SELECT = "SELECT new kz.gov.rfs.dto.NewsSummary(n.id, " +
+            "CASE WHEN :lang IN ('all', 'ru') THEN n.titleRu END, " +
+            "CASE WHEN :lang IN ('all', 'kk') THEN n.titleKk END, " +
+            "CASE WHEN :lang IN ('all', 'en') THEN n.titleEn END, " +
+            "CASE WHEN :lang IN ('all', 'ru') THEN n.shortDescriptionRu END, " +
+            "CASE WHEN :lang IN ('all', 'kk') THEN n.shortDescriptionKk END, " +
+            "CASE WHEN :lang IN ('all', 'en') THEN n.shortDescriptionEn END, " +
+            "n.imageUrl, n.publishedDate, n.newsType, n.viewCount) " +
+            "FROM News n WHERE n.isActive = true ";
+
+    @Query(value = SUMMARY_SELECT + "ORDER BY n.publishedDate DESC",
+            countQuery = "SELECT count(n) FROM News n WHERE n.isActive = true")
+    Page<NewsSummary> findActiveSummaries(@Param("lang") String lang, Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT + "AND n.newsType = :newsType ORDER BY n.publishedDate DESC",
+            countQuery = "SELECT count(n) FROM News n WHERE n.isActive = true AND n.newsType = :newsType")
+    Page<NewsSummary> findActiveSummariesByType(@Param("lang") String lang, @Param("newsType") NewsType newsType, Pageable pageable);
+
+    // List + Pageable: только LIMIT, без COUNT
+    @Query(SUMMARY_SELECT + "ORDER BY n.publishedDate DESC")
+    List<NewsSummary> findLatestSummaries(@Param("lang") String lang, Pageable limit);
+
+    @Query(SUMMARY_SELECT + "AND n.newsType = :newsType ORDER BY n.publishedDate DESC")
+    List<NewsSummary> findLatestSummariesByType(@Param("lang") String lang, @Param("newsType") NewsType newsType, Pageable limit);
+
+    // Keyset-пагинация по idx_news_active_date: без OFFSET и без COUNT (Pageable задаёт только LIMIT)
+    @Query(SUMMARY_SELECT + "ORDER BY n.publishedDate DESC, n.id DESC")
+    List<NewsSummary> findActiveSummariesFirst(@Param("lang") String lang, Pageable limit);
+
+    // Сравнение пар — граница диапазона индекса (publishedDate, id); отдельное <= — на случай, если планировщик его не использует
+    @Query(SUMMARY_SELECT + "AND (n.publishedDate, n.id) < (:publishedDate, :id) AND n.publishedDate <= :publishedDate " +
+            "ORDER BY n.publishedDate DESC, n.id DESC")
+    List<NewsSummary> findActiveSummariesAfter(@Param("lang") String lang,
+                                               @Param("publishedDate") LocalDateTime publishedDate,
+                                               @Param("id") Long id,
+                                               Pageable limit);
+
+    // Полнотекстовый поиск: tsvector-колонки search_ru/kk/en и GIN-индексы создаются в db/news-search.sql.
+    // :query — готовый текст tsquery (см. NewsService.toPrefixTsQuery), ts_headline считается только для страницы.
+    String SEARCH_FROM = "FROM news n, " +
+            "to_tsquery('russian', :query) q_ru, " +
+            "to_tsquery('kazakh', :query) q_kk, " +
+            "to_tsquery('english', :query) q_en " +
+            "WHERE n.is_active = true " +
+            "AND (n.search_ru @@ q_ru OR n.search_kk @@ q_kk OR n.search_en @@ q_en) ";
+
+    String HEADLINE_OPTIONS = "MaxFragments=2, MaxWords=25, MinWords=10, StartSel=<b>, StopSel=</b>";
+
+    String SEARCH_SELECT = "SELECT n.id AS id, " +
+            "CASE WHEN :lang IN ('all', 'ru') THEN n.title_ru END AS \"titleRu\", " +
+            "CASE WHEN :lang IN ('all', 'kk') THEN n.title_kk END AS \"titleKk\", " +
+            "CASE WHEN :lang IN ('all', 'en') THEN n.title_en END AS \"titleEn\", " +
+            "CASE WHEN :lang IN ('all', 'ru') THEN n.short_description_ru END AS \"shortDescriptionRu\", " +
+            "CASE WHEN :lang IN ('all', 'kk') THEN n.short_description_kk END AS \"shortDescriptionKk\", " +
+            "CASE WHEN :lang IN ('all', 'en') THEN n.short_description_en END AS \"shortDescriptionEn\", " +
+            "n.image_url AS \"imageUrl\", n.published_date AS \"publishedDate\", " +
+            "n.news_type AS \"newsType\", n.view_count AS \"viewCount\", " +
+            "GREATEST(ts_rank(n.search_ru, q_ru), ts_rank(n.search_kk, q_kk), ts_rank(n.search_en, q_en)) AS rank, " +
+            "CASE WHEN :lang IN ('all', 'ru') AND n.search_ru @@ q_ru THEN ts_headline('russian', n.content_ru, q_ru, '" + HEADLINE_OPTIONS + "') END AS \"headlineRu\", " +
+            "CASE WHEN :lang IN ('all', 'kk') AND n.search_kk @@ q_kk THEN ts_headline('kazakh', n.content_kk, q_kk, '" + HEADLINE_OPTIONS + "') END AS \"headlineKk\", " +
+            "CASE WHEN :lang IN ('all', 'en') AND n.search_en @@ q_en THEN ts_headline('english', n.content_en, q_en, '" + HEADLINE_OPTIONS + "') END AS \"headlineEn\" ";
+
+    String SEARCH_ORDER = "ORDER BY rank DESC, n.published_date DESC";
+
+    @Query(value = SEARCH_SELECT + SEARCH_FROM + SEARCH_ORDER,
+            countQuery = "SELECT count(*) " + SEARCH_FROM,
+            nativeQuery = true)
+    Page<NewsSearchResult> searchNews(@Param("query") String query, @Param("lang") String lang, Pageable pageable);
+
+    @Query(value = SEARCH_SELECT + SEARCH_FROM + "AND n.news_type = :newsType " + SEARCH_ORDER,
+            countQuery = "SELECT count(*) " + SEARCH_FROM + "AND n.news_type = :newsType",
+            nativeQuery = true)
+    Page<NewsSearchResult> searchNewsByType(@Param("query") String query, @Param("newsType") String newsType,
+                                            @Param("lang") String lang, Pageable pageable);
 }
\ No newline at end of file
@@ -5,7 +5,10 @@ import kz.gov.rfs.entity.ProcurementType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
 import java.util.List;
 
 @Repository
@@ -19,4 +22,20 @@ public interface ProcurementRepository extends JpaRepository<Procurement, Long>
     List<Procurement> findByYearAndProcurementTypeAndIsActiveTrue(Integer year, ProcurementType type);
 
     Long countByIsActive(Boolean isActive);
+
+    // Keyset-пагинация по idx_procurement_active_date. publishDate может быть NULL:
+    // такие записи идут первыми (DESC NULLS FIRST, как в PostgreSQL по умолчанию)
+    @Query("SELECT p FROM Procurement p WHERE p.isActive = true " +
+            "ORDER BY p.publishDate DESC NULLS FIRST, p.id DESC")
+    List<Procurement> findActiveFirst(Pageable limit);
+
+    @Query("SELECT p FROM Procurement p WHERE p.isActive = true AND " +
+            "(p.publishDate, p.id) < (:publishDate, :id) AND p.publishDate <= :publishDate " +
+            "ORDER BY p.publishDate DESC NULLS FIRST, p.id DESC")
+    List<Procurement> findActiveAfter(@Param("publishDate") LocalDate publishDate, @Param("id") Long id, Pageable limit);
+
+    @Query("SELECT p FROM Procurement p WHERE p.isActive = true AND " +
+            "(p.publishDate IS NOT NULL OR p.id < :id) " +
+            "ORDER BY p.publishDate DESC NULLS FIRST, p.id DESC")
+    List<Procurement> findActiveAfterUndated(@Param("id") Long id, Pageable limit);
 }
\ No newline at end of file
@@ -1,10 +1,8 @@
 package kz.gov.rfs.repository;
 
-import jakarta.persistence.LockModeType;
+import kz.gov.rfs.dto.RotatedRefreshToken;
 import kz.gov.rfs.entity.RefreshToken;
-import kz.gov.rfs.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -17,21 +15,61 @@ import java.util.Optional;
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
 
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query("SELECT rt FROM RefreshToken rt WHERE rt.token = :token")
-    Optional<RefreshToken> findByTokenWithLock(@Param("token") String token);
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
 
-    Optional<RefreshToken> findByToken(String token);
+    /**
+     * Сессия, в которой токен с этим хэшем уже был заменён ротацией (любое прошлое поколение)
+     */
+    @Query(value = "SELECT rt.* FROM refresh_token_used used " +
+            "JOIN refresh_tokens rt ON rt.family_id = used.family_id WHERE used.token_hash = :tokenHash",
+            nativeQuery = true)
+    Optional<RefreshToken> findByUsedTokenHash(@Param("tokenHash") String tokenHash);
 
-    Optional<RefreshToken> findByUser(User user);
+    @Query(value = "SELECT used_at FROM refresh_token_used WHERE token_hash = :tokenHash", nativeQuery = true)
+    Optional<Instant> findUsedAt(@Param("tokenHash") String tokenHash);
+
+    /**
+     * Ротация за один запрос: токен заменяется и продлевается, только если он не истёк
+     * и пользователь активен; заменённый хэш запоминается в refresh_token_used.
+     * Пусто — токен неизвестен, истёк, уже использован или пользователь заблокирован
+     */
+    @Transactional
+    @Query(value = "WITH rotated AS (UPDATE refresh_tokens rt " +
+            "SET token_hash = :newTokenHash, rotated_at = now(), last_used_at = now(), expiry_date = :expiryDate " +
+            "FROM users u " +
+            "WHERE rt.token_hash = :tokenHash AND rt.expiry_date > now() AND u.id = rt.user_id AND u.is_active = true " +
+            "RETURNING u.id AS user_id, u.username, u.email, u.role, u.token_version, rt.family_id), " +
+            "used AS (INSERT INTO refresh_token_used (token_hash, family_id, used_at) " +
+            "SELECT :tokenHash, family_id, now() FROM rotated) " +
+            "SELECT user_id AS \"userId\", username AS \"username\", email AS \"email\", role AS \"role\", " +
+            "token_version AS \"tokenVersion\", family_id AS \"familyId\" FROM rotated",
+            nativeQuery = true)
+    Optional<RotatedRefreshToken> rotate(@Param("tokenHash") String tokenHash,
+                                         @Param("newTokenHash") String newTokenHash,
+                                         @Param("expiryDate") Instant expiryDate);
 
     @Transactional
     @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.user.id = :userId")
-    int deleteByUserId(@Param("userId") Long userId);
+    @Query("DELETE FROM RefreshToken rt WHERE rt.familyId = :familyId")
+    int deleteByFamilyId(@Param("familyId") String familyId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RefreshToken rt WHERE rt.tokenHash = :tokenHash AND rt.user.id = :userId")
+    int deleteSession(@Param("tokenHash") String tokenHash, @Param("userId") Long userId);
+
+    /**
+     * Лимит сессий: оставляет keep последних использованных, остальные удаляет
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM refresh_tokens WHERE id IN (" +
+            "SELECT id FROM refresh_tokens WHERE user_id = :userId ORDER BY last_used_at DESC OFFSET :keep)",
+            nativeQuery = true)
+    int deleteOldestSessions(@Param("userId") Long userId, @Param("keep") int keep);
 
     @Transactional
     @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.expiryDate < :now")
-    long deleteAllExpiredTokens(Instant now);
-}
\ No newline at end of file
+    @Query("DELETE FROM RefreshToken rt WHERE rt.user.id = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
@@ -0,0 +1,41 @@
+package kz.gov.rfs.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Блокировки входа только в памяти инстанса: сбрасываются при рестарте и не видны другим нодам
+ */
+@Component
+@ConditionalOnProperty(name = "auth.lockout.store", havingValue = "memory")
+public class InMemoryLoginAttemptStore implements LoginAttemptStore {
+
+    private final LocalLoginAttempts attempts;
+
+    public InMemoryLoginAttemptStore(@Value("${auth.lockout.max-attempts:10}") int maxAttempts,
+                                     @Value("${auth.lockout.duration-minutes:5}") long lockoutMinutes,
+                                     @Value("${auth.lockout.attempt-window-minutes:15}") long attemptWindowMinutes,
+                                     @Value("${auth.lockout.max-entries:100000}") long maxEntries) {
+        this.attempts = new LocalLoginAttempts(maxAttempts, Duration.ofMinutes(lockoutMinutes),
+                Duration.ofMinutes(attemptWindowMinutes), maxEntries);
+    }
+
+    @Override
+    public Instant getLockedUntil(String username) {
+        return attempts.getLockedUntil(username);
+    }
+
+    @Override
+    public LoginState recordFailure(String username) {
+        return attempts.recordFailure(username);
+    }
+
+    @Override
+    public void reset(String username) {
+        attempts.reset(username);
+    }
+}
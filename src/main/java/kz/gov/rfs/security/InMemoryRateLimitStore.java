@@ -0,0 +1,66 @@
+package kz.gov.rfs.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Token bucket на клиента в памяти инстанса. Бакеты живут в ограниченном Caffeine-кэше:
+ * при наплыве уникальных IP вытесняются самые старые, а простаивающий бакет удаляется,
+ * когда он и так был бы полностью заполнен.
+ */
+@Component
+@ConditionalOnProperty(name = "rate-limit.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRateLimitStore implements RateLimitStore {
+
+    private final MeterRegistry meterRegistry;
+    private final long maxClients;
+    private final Map<String, PolicyBuckets> policies = new ConcurrentHashMap<>();
+
+    public InMemoryRateLimitStore(MeterRegistry meterRegistry,
+                                  @Value("${rate-limit.max-clients:100000}") long maxClients) {
+        this.meterRegistry = meterRegistry;
+        this.maxClients = maxClients;
+    }
+
+    @Override
+    public long tryAcquire(RateLimitPolicy policy, String clientKey) {
+        PolicyBuckets buckets = policies.get(policy.getName());
+        if (buckets == null) {
+            buckets = policies.computeIfAbsent(policy.getName(), name -> new PolicyBuckets(policy));
+        }
+        long waitNanos = buckets.cache.get(clientKey, buckets.factory).tryAcquire(System.nanoTime());
+        return waitNanos == 0 ? 0 : Math.max(1, waitNanos / 1_000_000);
+    }
+
+    private final class PolicyBuckets {
+        private final Cache<String, TokenBucket> cache;
+        private final Function<String, TokenBucket> factory;
+
+        private PolicyBuckets(RateLimitPolicy policy) {
+            int capacity = policy.getCapacity();
+            int perMinute = policy.getRefillPerMinute();
+            Duration fullRefill = Duration.ofMillis(Math.max(60_000L, 60_000L * capacity / perMinute));
+
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(maxClients)
+                    .expireAfterAccess(fullRefill)
+                    .build();
+            this.factory = key -> new TokenBucket(capacity, perMinute, System.nanoTime());
+
+            Gauge.builder("rate_limit.clients", cache, Cache::estimatedSize)
+                    .tag("policy", policy.getName())
+                    .description("Clients currently tracked by the rate limiter")
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package kz.gov.rfs.security;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import kz.gov.rfs.entity.Role;
+import kz.gov.rfs.entity.User;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -24,6 +28,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final JwtPrincipalCache principalCache;
+    private final TokenVersionStore tokenVersionStore;
+
+    @Value("${jwt.stateless:true}")
+    private boolean statelessAuth;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -35,10 +44,26 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             if (StringUtils.hasText(jwt)) {
                 // ИСПРАВЛЕНИЕ: добавлена детальная обработка истекших токенов
                 try {
-                    if (jwtUtil.validateToken(jwt)) {
-                        String username = jwtUtil.getUsernameFromToken(jwt);
-                        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                    // Повторный запрос с тем же токеном — без проверки подписи и без SELECT пользователя
+                    UserDetails userDetails = principalCache.get(jwt);
+                    if (userDetails == null) {
+                        Claims claims = jwtUtil.getValidClaims(jwt);
+                        if (claims != null) {
+                            userDetails = statelessAuth ? userFromClaims(claims) : loadUser(claims);
+                            if (userDetails != null) {
+                                principalCache.put(jwt, userDetails, claims.getExpiration());
+                            }
+                        }
+                    }
+
+                    // Отозванные токены (смена роли, блокировка, пароль, logout) отклоняются без обращения к БД
+                    if (userDetails != null && !isCurrentVersion((User) userDetails)) {
+                        log.debug("Revoked JWT token for user {}", userDetails.getUsername());
+                        userDetails = null;
+                    }
 
+                    if (userDetails != null) {
+                        String username = userDetails.getUsername();
                         UsernamePasswordAuthenticationToken authentication =
                                 new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                         authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -62,6 +87,36 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Principal целиком из claims: для контроллеров достаточно id, логина и роли
+     */
+    private User userFromClaims(Claims claims) {
+        Long userId = claims.get(JwtUtil.CLAIM_USER_ID, Long.class);
+        String role = claims.get(JwtUtil.CLAIM_ROLE, String.class);
+        Integer version = claims.get(JwtUtil.CLAIM_TOKEN_VERSION, Integer.class);
+        if (userId == null || role == null || version == null) {
+            log.warn("JWT token without required claims for user {}", claims.getSubject());
+            return null;
+        }
+
+        User user = new User();
+        user.setId(userId);
+        user.setUsername(claims.getSubject());
+        user.setRole(Role.valueOf(role));
+        user.setTokenVersion(version);
+        return user;
+    }
+
+    private User loadUser(Claims claims) {
+        User user = (User) userDetailsService.loadUserByUsername(claims.getSubject());
+        Integer version = claims.get(JwtUtil.CLAIM_TOKEN_VERSION, Integer.class);
+        return user.getTokenVersion().equals(version) ? user : null;
+    }
+
+    private boolean isCurrentVersion(User user) {
+        return tokenVersionStore.isCurrent(user.getId(), user.getTokenVersion());
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
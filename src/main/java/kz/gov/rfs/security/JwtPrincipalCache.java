@@ -0,0 +1,80 @@
+package kz.gov.rfs.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import kz.gov.rfs.util.TokenHash;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+
+/**
+ * Кэш "access token -> пользователь" для JwtAuthenticationFilter.
+ * Ключ — SHA-256 токена, запись живёт не дольше ttl и не дольше срока действия самого токена.
+ * При изменении пользователя (роль, статус, пароль, удаление) записи сбрасываются через evictUser().
+ */
+@Slf4j
+@Component
+public class JwtPrincipalCache {
+
+    private final Cache<String, Entry> cache;
+
+    private record Entry(UserDetails user, long expiresAtMillis) {
+    }
+
+    public JwtPrincipalCache(MeterRegistry meterRegistry,
+                             @Value("${jwt.principal-cache.max-size:10000}") long maxSize,
+                             @Value("${jwt.principal-cache.ttl-seconds:300}") long ttlSeconds) {
+        long ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        long untilTokenExpiry = Duration.ofMillis(entry.expiresAtMillis() - System.currentTimeMillis()).toNanos();
+                        return Math.max(0, Math.min(ttlNanos, untilTokenExpiry));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwtPrincipals");
+    }
+
+    public UserDetails get(String token) {
+        Entry entry = cache.getIfPresent(TokenHash.sha256Hex(token));
+        if (entry == null || entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry.user();
+    }
+
+    public void put(String token, UserDetails user, Date expiration) {
+        cache.put(TokenHash.sha256Hex(token), new Entry(user, expiration.getTime()));
+    }
+
+    /**
+     * Сброс всех закэшированных токенов пользователя (редкая операция — линейный проход по кэшу)
+     */
+    public void evictUser(String username) {
+        cache.asMap().values().removeIf(entry -> entry.user().getUsername().equals(username));
+        log.debug("Evicted cached JWT principals for user: {}", username);
+    }
+}
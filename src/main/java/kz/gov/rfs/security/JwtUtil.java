@@ -18,6 +18,10 @@ import java.util.Date;
 @Component
 public class JwtUtil {
 
+    public static final String CLAIM_USER_ID = "userId";
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
@@ -26,6 +30,9 @@ public class JwtUtil {
 
     private Key key;
 
+    // JwtParser потокобезопасен — строим один раз
+    private JwtParser parser;
+
     @PostConstruct
     public void init() {
         if (jwtSecret == null || jwtSecret.trim().isEmpty()) {
@@ -43,32 +50,33 @@ public class JwtUtil {
 
         byte[] keyBytes = jwtSecret.getBytes(StandardCharsets.UTF_8);
         this.key = Keys.hmacShaKeyFor(keyBytes);
+        this.parser = Jwts.parser()
+                .setSigningKey(key)
+                .build();
 
         log.info("✅ JWT initialized successfully with HS512 (key length: {} bytes)", keyBytes.length);
     }
 
     public String generateToken(Authentication authentication) {
-        User user = (User) authentication.getPrincipal();
-        return generateToken(user.getUsername(), user.getId(), user.getRole().name());
+        return generateToken((User) authentication.getPrincipal());
     }
 
-    public String generateTokenFromUsername(String username) {
-        return Jwts.builder()
-                .setSubject(username)
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + jwtExpiration))
-                .signWith(key, SignatureAlgorithm.HS512)
-                .compact();
+    /**
+     * Токен несёт всё, что нужно фильтру: id, роль и версию токенов пользователя
+     */
+    public String generateToken(User user) {
+        return generateToken(user.getUsername(), user.getId(), user.getRole().name(), user.getTokenVersion());
     }
 
-    private String generateToken(String username, Long userId, String role) {
+    public String generateToken(String username, Long userId, String role, Integer tokenVersion) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpiration);
 
         return Jwts.builder()
                 .setSubject(username)
-                .claim("userId", userId)
-                .claim("role", role)
+                .claim(CLAIM_USER_ID, userId)
+                .claim(CLAIM_ROLE, role)
+                .claim(CLAIM_TOKEN_VERSION, tokenVersion)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
                 .signWith(key, SignatureAlgorithm.HS512)
@@ -76,42 +84,27 @@ public class JwtUtil {
     }
 
     public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-
-        return claims.getSubject();
+        return parseClaims(token).getSubject();
     }
 
     public Long getUserIdFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-
-        return claims.get("userId", Long.class);
+        return parseClaims(token).get(CLAIM_USER_ID, Long.class);
     }
 
     public String getRoleFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-
-        return claims.get("role", String.class);
+        return parseClaims(token).get(CLAIM_ROLE, String.class);
     }
 
     public boolean validateToken(String token) {
+        return getValidClaims(token) != null;
+    }
+
+    /**
+     * Проверка подписи и срока действия за один разбор токена. null — токен невалиден
+     */
+    public Claims getValidClaims(String token) {
         try {
-            Jwts.parser()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
+            return parseClaims(token);
         } catch (SignatureException e) {
             log.error("Invalid JWT signature: {}", e.getMessage());
         } catch (MalformedJwtException e) {
@@ -123,16 +116,14 @@ public class JwtUtil {
         } catch (IllegalArgumentException e) {
             log.error("JWT claims string is empty: {}", e.getMessage());
         }
-        return false;
+        return null;
     }
 
     public Date getExpirationDateFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parseClaims(token).getExpiration();
+    }
 
-        return claims.getExpiration();
+    private Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
     }
 }
\ No newline at end of file
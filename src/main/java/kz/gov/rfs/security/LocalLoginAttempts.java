@@ -0,0 +1,82 @@
+package kz.gov.rfs.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import kz.gov.rfs.security.LoginAttemptStore.LoginState;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Ограниченный по размеру кэш состояний входа: счётчик попыток живёт attempt-window
+ * с последней ошибки, блокировка — до своего окончания. Перебор случайных логинов
+ * вытесняет старые записи, а не растит память.
+ */
+final class LocalLoginAttempts {
+
+    private final int maxAttempts;
+    private final Duration lockoutDuration;
+    private final Cache<String, LoginState> states;
+
+    LocalLoginAttempts(int maxAttempts, Duration lockoutDuration, Duration attemptWindow, long maxEntries) {
+        this.maxAttempts = maxAttempts;
+        this.lockoutDuration = lockoutDuration;
+        long attemptWindowNanos = attemptWindow.toNanos();
+
+        this.states = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<String, LoginState>() {
+                    @Override
+                    public long expireAfterCreate(String key, LoginState state, long currentTime) {
+                        if (state.lockedUntil() == null) {
+                            return attemptWindowNanos;
+                        }
+                        return Math.max(0, Duration.between(Instant.now(), state.lockedUntil()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, LoginState state, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, state, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, LoginState state, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    Instant getLockedUntil(String username) {
+        LoginState state = states.getIfPresent(username);
+        return state != null && state.isLockedAt(Instant.now()) ? state.lockedUntil() : null;
+    }
+
+    LoginState recordFailure(String username) {
+        Instant now = Instant.now();
+        return states.asMap().compute(username, (key, state) -> {
+            if (state != null && state.isLockedAt(now)) {
+                return state;
+            }
+            int failures = (state != null ? state.failures() : 0) + 1;
+            if (failures >= maxAttempts) {
+                // Как и раньше: при блокировке счётчик обнуляется
+                return new LoginState(0, now.plus(lockoutDuration));
+            }
+            return new LoginState(failures, null);
+        });
+    }
+
+    /**
+     * Блокировка, пришедшая с другого инстанса
+     */
+    void lock(String username, Instant lockedUntil) {
+        states.asMap().merge(username, new LoginState(0, lockedUntil), (current, remote) ->
+                current.lockedUntil() != null && !current.lockedUntil().isBefore(lockedUntil) ? current : remote);
+    }
+
+    void reset(String username) {
+        states.invalidate(username);
+    }
+}
@@ -0,0 +1,32 @@
+package kz.gov.rfs.security;
+
+import java.time.Instant;
+
+/**
+ * Неудачные попытки входа и блокировки по логину.
+ * memory — в памяти инстанса, postgres — общие для всех инстансов (auth.lockout.store).
+ */
+public interface LoginAttemptStore {
+
+    /**
+     * До какого момента логин заблокирован; null — не заблокирован
+     */
+    Instant getLockedUntil(String username);
+
+    /**
+     * Учитывает неудачную попытку и возвращает новое состояние (при достижении лимита — блокировка)
+     */
+    LoginState recordFailure(String username);
+
+    /**
+     * Успешный вход, logout или ручная разблокировка
+     */
+    void reset(String username);
+
+    record LoginState(int failures, Instant lockedUntil) {
+
+        public boolean isLockedAt(Instant now) {
+            return lockedUntil != null && now.isBefore(lockedUntil);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package kz.gov.rfs.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import kz.gov.rfs.util.TokenHash;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Блокировки входа, общие для всех инстансов и переживающие рестарт (таблица login_attempts).
+ *
+ * Запрос на вход в БД не ходит: решение принимается по локальному near-cache.
+ * Раз в auth.lockout.flush-interval-ms накопленные ошибки и сбросы отправляются пачкой,
+ * логины, достигшие лимита в сумме по всем инстансам, блокируются в БД,
+ * а действующие блокировки загружаются обратно в near-cache.
+ *
+ * Пока БД недоступна, очередь на отправку ограничена, а после MAX_FAILED_FLUSHES неудач подряд
+ * очередь сбрасывается — попытки продолжают учитываться локально.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "auth.lockout.store", havingValue = "postgres", matchIfMissing = true)
+public class PostgresLoginAttemptStore implements LoginAttemptStore {
+
+    private static final int MAX_FAILED_FLUSHES = 5;
+    // login_attempts.username varchar(255)
+    private static final int MAX_USERNAME_LENGTH = 255;
+
+    private static final String RESET_SQL = "DELETE FROM login_attempts WHERE username = ANY (?)";
+
+    // Попытки старше окна не суммируются с новыми
+    private static final String UPSERT_SQL = "INSERT INTO login_attempts AS a (username, attempts, locked_until, updated_at) " +
+            "SELECT u, d, NULL, now() FROM unnest(?::varchar[], ?::integer[]) AS t(u, d) " +
+            "ON CONFLICT (username) DO UPDATE SET " +
+            "attempts = CASE WHEN a.updated_at < now() - make_interval(mins => ?) " +
+            "THEN EXCLUDED.attempts ELSE a.attempts + EXCLUDED.attempts END, " +
+            "updated_at = now()";
+
+    private static final String LOCK_SQL = "UPDATE login_attempts " +
+            "SET attempts = 0, locked_until = now() + make_interval(mins => ?) " +
+            "WHERE username = ANY (?) AND attempts >= ?";
+
+    private static final String ACTIVE_LOCKS_SQL = "SELECT username, locked_until FROM login_attempts WHERE locked_until > now()";
+
+    private static final String CLEANUP_SQL = "DELETE FROM login_attempts " +
+            "WHERE updated_at < now() - make_interval(mins => ?) AND (locked_until IS NULL OR locked_until < now())";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LocalLoginAttempts nearCache;
+    private final int maxAttempts;
+    private final int lockoutMinutes;
+    private final int attemptWindowMinutes;
+    private final int maxPending;
+
+    private final Map<String, Integer> pendingFailures = new ConcurrentHashMap<>();
+    private final Set<String> pendingResets = ConcurrentHashMap.newKeySet();
+    private int failedFlushes;
+
+    public PostgresLoginAttemptStore(JdbcTemplate jdbcTemplate,
+                                     TransactionTemplate transactionTemplate,
+                                     @Value("${auth.lockout.max-attempts:10}") int maxAttempts,
+                                     @Value("${auth.lockout.duration-minutes:5}") int lockoutMinutes,
+                                     @Value("${auth.lockout.attempt-window-minutes:15}") int attemptWindowMinutes,
+                                     @Value("${auth.lockout.max-entries:100000}") long maxEntries,
+                                     @Value("${auth.lockout.max-pending:10000}") int maxPending) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.maxAttempts = maxAttempts;
+        this.lockoutMinutes = lockoutMinutes;
+        this.attemptWindowMinutes = attemptWindowMinutes;
+        this.maxPending = maxPending;
+        this.nearCache = new LocalLoginAttempts(maxAttempts, Duration.ofMinutes(lockoutMinutes),
+                Duration.ofMinutes(attemptWindowMinutes), maxEntries);
+    }
+
+    @PostConstruct
+    public void init() {
+        loadActiveLocks();
+    }
+
+    @Override
+    public Instant getLockedUntil(String username) {
+        return nearCache.getLockedUntil(username);
+    }
+
+    @Override
+    public LoginState recordFailure(String username) {
+        String key = storageKey(username);
+        if (pendingFailures.size() < maxPending || pendingFailures.containsKey(key)) {
+            pendingFailures.merge(key, 1, Integer::sum);
+        }
+        return nearCache.recordFailure(username);
+    }
+
+    @Override
+    public void reset(String username) {
+        nearCache.reset(username);
+        String key = storageKey(username);
+        pendingFailures.remove(key);
+        if (pendingResets.size() < maxPending) {
+            pendingResets.add(key);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${auth.lockout.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        List<String> resets = new ArrayList<>(pendingResets);
+        resets.forEach(pendingResets::remove);
+
+        List<String> usernames = new ArrayList<>();
+        List<Integer> deltas = new ArrayList<>();
+        for (String username : new ArrayList<>(pendingFailures.keySet())) {
+            Integer delta = pendingFailures.remove(username);
+            if (delta != null) {
+                usernames.add(username);
+                deltas.add(delta);
+            }
+        }
+
+        if (!resets.isEmpty() || !usernames.isEmpty()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (!resets.isEmpty()) {
+                        jdbcTemplate.update(connection -> {
+                            PreparedStatement ps = connection.prepareStatement(RESET_SQL);
+                            ps.setArray(1, connection.createArrayOf("varchar", resets.toArray()));
+                            return ps;
+                        });
+                    }
+                    if (!usernames.isEmpty()) {
+                        jdbcTemplate.update(connection -> {
+                            PreparedStatement ps = connection.prepareStatement(UPSERT_SQL);
+                            ps.setArray(1, connection.createArrayOf("varchar", usernames.toArray()));
+                            ps.setArray(2, connection.createArrayOf("integer", deltas.toArray()));
+                            ps.setInt(3, attemptWindowMinutes);
+                            return ps;
+                        });
+                        jdbcTemplate.update(connection -> {
+                            PreparedStatement ps = connection.prepareStatement(LOCK_SQL);
+                            ps.setInt(1, lockoutMinutes);
+                            ps.setArray(2, connection.createArrayOf("varchar", usernames.toArray()));
+                            ps.setInt(3, maxAttempts);
+                            return ps;
+                        });
+                    }
+                });
+                failedFlushes = 0;
+            } catch (Exception e) {
+                failedFlushes++;
+                log.error("❌ Failed to persist login attempts: {}", e.getMessage());
+                if (failedFlushes < MAX_FAILED_FLUSHES) {
+                    // Вернём в очередь: локальный near-cache уже учёл попытки, повторим при следующем сбросе
+                    pendingResets.addAll(resets);
+                    for (int i = 0; i < usernames.size(); i++) {
+                        pendingFailures.merge(usernames.get(i), deltas.get(i), Integer::sum);
+                    }
+                } else {
+                    log.warn("⚠️ Dropping {} login attempt updates after {} failed flushes",
+                            resets.size() + usernames.size(), failedFlushes);
+                    failedFlushes = 0;
+                }
+            }
+        }
+
+        // Блокировки с других инстансов загружаем, даже если своя запись не удалась
+        loadActiveLocks();
+    }
+
+    /**
+     * Блокировки, выставленные на других инстансах
+     */
+    private void loadActiveLocks() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(ACTIVE_LOCKS_SQL, rs -> {
+                String username = rs.getString("username");
+                Timestamp lockedUntil = rs.getTimestamp("locked_until");
+                if (!pendingResets.contains(username)) {
+                    nearCache.lock(username, lockedUntil.toInstant());
+                }
+            }));
+        } catch (Exception e) {
+            log.error("❌ Failed to load login lockouts: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Логин длиннее колонки заменяется его хэшем
+     */
+    private static String storageKey(String username) {
+        return username.length() <= MAX_USERNAME_LENGTH ? username : "sha256:" + TokenHash.sha256Hex(username);
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void cleanup() {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(CLEANUP_SQL, attemptWindowMinutes));
+        } catch (Exception e) {
+            log.warn("Failed to clean up login attempts: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,329 @@
+package kz.gov.rfs.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import kz.gov.rfs.util.TokenHash;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Общий для всех инстансов бюджет запросов: счётчики по минутным окнам в таблице rate_limit_counters.
+ *
+ * Запрос не ходит в БД: решение принимается по последнему известному глобальному значению
+ * плюс локальные ещё не отправленные запросы. Раз в rate-limit.store.flush-interval-ms накопленные
+ * дельты отправляются одним UPSERT, который возвращает новые глобальные суммы.
+ * Лимит — per-minute политики в скользящем окне (предыдущая минута с весом + текущая);
+ * превышение ограничено запросами, пришедшими на другие инстансы за один интервал синхронизации.
+ *
+ * Если синхронизация не удалась, дельта возвращается в очередь, но не дольше MAX_SYNC_ATTEMPTS попыток;
+ * дельты прошедших окон не отправляются. Строку, которую отвергла БД, отбрасываем отдельно от остальных.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "rate-limit.store", havingValue = "postgres")
+public class PostgresRateLimitStore implements RateLimitStore {
+
+    private static final long WINDOW_MS = 60_000;
+    private static final int MAX_SYNC_ATTEMPTS = 5;
+    // client_key varchar(128)
+    static final int MAX_CLIENT_KEY_LENGTH = 128;
+
+    private static final String UPSERT_SQL = "INSERT INTO rate_limit_counters AS c (policy, client_key, window_minute, hits) " +
+            "SELECT * FROM unnest(?::varchar[], ?::varchar[], ?::bigint[], ?::integer[]) " +
+            "ON CONFLICT (policy, client_key, window_minute) DO UPDATE SET hits = c.hits + EXCLUDED.hits " +
+            "RETURNING policy, client_key, window_minute, hits";
+
+    private static final String CLEANUP_SQL = "DELETE FROM rate_limit_counters WHERE window_minute < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxClients;
+    private final Clock clock;
+    private final Counter syncErrors;
+
+    private final Map<String, Cache<String, WindowCounter>> policies = new ConcurrentHashMap<>();
+    private final Queue<WindowCounter> dirty = new ConcurrentLinkedQueue<>();
+
+    @Autowired
+    public PostgresRateLimitStore(JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${rate-limit.max-clients:100000}") long maxClients) {
+        this(jdbcTemplate, transactionTemplate, meterRegistry, maxClients, Clock.systemUTC());
+    }
+
+    PostgresRateLimitStore(JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           MeterRegistry meterRegistry,
+                           long maxClients,
+                           Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.maxClients = maxClients;
+        this.clock = clock;
+        this.syncErrors = Counter.builder("rate_limit.store.sync.errors")
+                .description("Failed synchronizations of rate limit counters with PostgreSQL")
+                .register(meterRegistry);
+        log.info("✅ Rate limit counters are shared through PostgreSQL");
+    }
+
+    @Override
+    public long tryAcquire(RateLimitPolicy policy, String clientKey) {
+        Cache<String, WindowCounter> counters = policies.get(policy.getName());
+        if (counters == null) {
+            counters = policies.computeIfAbsent(policy.getName(), name -> Caffeine.newBuilder()
+                    .maximumSize(maxClients)
+                    .expireAfterAccess(Duration.ofMillis(2 * WINDOW_MS))
+                    .build());
+        }
+
+        long now = clock.millis();
+        String key = normalizeKey(clientKey);
+        WindowCounter counter = counters.getIfPresent(key);
+        if (counter == null) {
+            counter = counters.get(key, k -> new WindowCounter(policy.getName(), k));
+        }
+
+        synchronized (counter) {
+            counter.roll(now / WINDOW_MS);
+
+            long elapsedInWindow = now % WINDOW_MS;
+            double previousWeight = 1 - (double) elapsedInWindow / WINDOW_MS;
+            double estimate = counter.previousTotal * previousWeight + counter.globalTotal
+                    + counter.inFlight + counter.pending;
+            int limit = policy.getRefillPerMinute();
+
+            if (estimate >= limit) {
+                long untilWindowEnd = WINDOW_MS - elapsedInWindow;
+                if (counter.previousTotal == 0) {
+                    return untilWindowEnd;
+                }
+                // Сколько ждать, пока вклад предыдущей минуты уменьшится на нужную величину
+                long wait = (long) Math.ceil((estimate - limit + 1) / counter.previousTotal * WINDOW_MS);
+                return Math.max(1, Math.min(untilWindowEnd, wait));
+            }
+
+            counter.pending++;
+            if (!counter.dirty) {
+                counter.dirty = true;
+                dirty.add(counter);
+            }
+            return 0;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limit.store.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        long currentWindow = clock.millis() / WINDOW_MS;
+        List<Delta> batch = new ArrayList<>();
+        WindowCounter counter;
+        while ((counter = dirty.poll()) != null) {
+            synchronized (counter) {
+                counter.dirty = false;
+                // Окно ушло: дельта уже не влияет на решения (вытесненный счётчик сам окно не сменит)
+                if (counter.pending > 0 && counter.window == currentWindow) {
+                    batch.add(new Delta(counter, counter.window, counter.pending));
+                    counter.inFlight += counter.pending;
+                    counter.pending = 0;
+                }
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> totals = new HashMap<>();
+        Set<Delta> rejected = new HashSet<>();
+        try {
+            upsert(batch, totals);
+        } catch (DataIntegrityViolationException e) {
+            // Одна строка, которую не принимает БД, не должна останавливать синхронизацию остальных
+            log.warn("Rate limit sync rejected ({}), retrying row by row", e.getMessage());
+            for (Delta delta : batch) {
+                try {
+                    upsert(List.of(delta), totals);
+                } catch (DataIntegrityViolationException rowError) {
+                    rejected.add(delta);
+                    log.error("❌ Dropping rate limit counter {}/{}: {}",
+                            delta.policy(), delta.clientKey(), rowError.getMessage());
+                } catch (Exception rowError) {
+                    syncErrors.increment();
+                    log.error("❌ Failed to sync rate limit counters: {}", rowError.getMessage());
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            syncErrors.increment();
+            log.error("❌ Failed to sync {} rate limit counters: {}", batch.size(), e.getMessage());
+        }
+
+        for (Delta delta : batch) {
+            WindowCounter c = delta.counter();
+            Long total = totals.get(key(c.policy, c.clientKey, delta.window()));
+            synchronized (c) {
+                // Окно уже сменилось — roll() обнулил и inFlight, и глобальную сумму
+                if (c.window != delta.window()) {
+                    continue;
+                }
+                c.inFlight -= delta.hits();
+                if (total != null) {
+                    c.globalTotal = Math.max(c.globalTotal, total);
+                    c.failedSyncs = 0;
+                    continue;
+                }
+                if (rejected.contains(delta)) {
+                    // БД строку не примет: учитываем запросы только локально и больше не отправляем
+                    c.globalTotal += delta.hits();
+                    continue;
+                }
+                // Не отправилось — дельта остаётся в локальной оценке (pending), а в очередь возвращается,
+                // пока не исчерпаны попытки
+                c.pending += delta.hits();
+                c.failedSyncs++;
+                if (c.failedSyncs < MAX_SYNC_ATTEMPTS) {
+                    if (!c.dirty) {
+                        c.dirty = true;
+                        dirty.add(c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Добавляет дельты в общую таблицу; новые суммы окон — в totals
+     */
+    void upsert(List<Delta> batch, Map<String, Long> totals) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(
+                connection -> prepareUpsert(connection, batch),
+                rs -> {
+                    totals.put(key(rs.getString("policy"), rs.getString("client_key"), rs.getLong("window_minute")),
+                            rs.getLong("hits"));
+                }));
+    }
+
+    @Scheduled(fixedDelay = WINDOW_MS)
+    public void cleanup() {
+        long oldestKept = clock.millis() / WINDOW_MS - 2;
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(CLEANUP_SQL, oldestKept));
+        } catch (Exception e) {
+            log.warn("Failed to clean up rate limit counters: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private static PreparedStatement prepareUpsert(Connection connection, List<Delta> batch) throws SQLException {
+        int size = batch.size();
+        String[] policies = new String[size];
+        String[] clients = new String[size];
+        Long[] windows = new Long[size];
+        Integer[] hits = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            Delta delta = batch.get(i);
+            policies[i] = delta.counter().policy;
+            clients[i] = delta.counter().clientKey;
+            windows[i] = delta.window();
+            hits[i] = delta.hits();
+        }
+
+        PreparedStatement ps = connection.prepareStatement(UPSERT_SQL);
+        ps.setArray(1, connection.createArrayOf("varchar", policies));
+        ps.setArray(2, connection.createArrayOf("varchar", clients));
+        ps.setArray(3, connection.createArrayOf("bigint", windows));
+        ps.setArray(4, connection.createArrayOf("integer", hits));
+        return ps;
+    }
+
+    /**
+     * Ключ клиента длиннее колонки заменяется его хэшем
+     */
+    static String normalizeKey(String clientKey) {
+        if (clientKey == null) {
+            return "unknown";
+        }
+        return clientKey.length() <= MAX_CLIENT_KEY_LENGTH ? clientKey : "sha256:" + TokenHash.sha256Hex(clientKey);
+    }
+
+    static String key(String policy, String clientKey, long window) {
+        return policy + '\u0000' + clientKey + '\u0000' + window;
+    }
+
+    record Delta(WindowCounter counter, long window, int hits) {
+
+        String policy() {
+            return counter.policy;
+        }
+
+        String clientKey() {
+            return counter.clientKey;
+        }
+    }
+
+    /**
+     * Счётчик клиента в текущем и предыдущем минутном окне. Все поля — под монитором счётчика
+     */
+    static final class WindowCounter {
+        private final String policy;
+        private final String clientKey;
+
+        private long window;
+        private long previousTotal;
+        // Последняя известная глобальная сумма текущего окна (включает уже отправленные локальные запросы)
+        private long globalTotal;
+        // Отправлено в БД, ответ ещё не получен
+        private int inFlight;
+        // Ещё не отправлено
+        private int pending;
+        private boolean dirty;
+        // Неудачные синхронизации подряд
+        private int failedSyncs;
+
+        private WindowCounter(String policy, String clientKey) {
+            this.policy = policy;
+            this.clientKey = clientKey;
+        }
+
+        private void roll(long currentWindow) {
+            if (currentWindow == window) {
+                return;
+            }
+            // Неотправленные запросы прошлого окна в БД уже не попадут, но учитываются локально
+            previousTotal = currentWindow == window + 1 ? globalTotal + inFlight + pending : 0;
+            window = currentWindow;
+            globalTotal = 0;
+            inFlight = 0;
+            pending = 0;
+            failedSyncs = 0;
+        }
+    }
+}
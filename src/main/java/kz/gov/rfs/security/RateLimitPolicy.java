@@ -0,0 +1,63 @@
+package kz.gov.rfs.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+
+/**
+ * Политика ограничения запросов для группы маршрутов (login, search, uploads, public-get, default).
+ * Сами счётчики хранит RateLimitStore.
+ *
+ * Настройки: rate-limit.&lt;name&gt;.capacity и rate-limit.&lt;name&gt;.per-minute
+ */
+public final class RateLimitPolicy {
+
+    private final String name;
+    private final int capacity;
+    private final int refillPerMinute;
+    private final Counter rejected;
+
+    private RateLimitPolicy(String name, int capacity, int refillPerMinute, MeterRegistry meterRegistry) {
+        if (capacity < 1 || refillPerMinute < 1) {
+            throw new IllegalStateException("Rate limit policy '" + name + "' must allow at least 1 request per minute");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.refillPerMinute = refillPerMinute;
+        this.rejected = Counter.builder("rate_limit.rejected")
+                .tag("policy", name)
+                .description("Requests rejected by the rate limiter")
+                .register(meterRegistry);
+    }
+
+    static RateLimitPolicy fromEnvironment(String name, int defaultCapacity, int defaultPerMinute,
+                                           Environment environment, MeterRegistry meterRegistry) {
+        int capacity = environment.getProperty("rate-limit." + name + ".capacity", Integer.class, defaultCapacity);
+        int perMinute = environment.getProperty("rate-limit." + name + ".per-minute", Integer.class, defaultPerMinute);
+        return new RateLimitPolicy(name, capacity, perMinute, meterRegistry);
+    }
+
+    void recordRejected() {
+        rejected.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Сколько запросов можно сделать подряд (размер бакета)
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getRefillPerMinute() {
+        return refillPerMinute;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + capacity + " burst, " + refillPerMinute + "/min)";
+    }
+}
@@ -0,0 +1,13 @@
+package kz.gov.rfs.security;
+
+/**
+ * Хранилище счётчиков rate limiting.
+ * memory — счётчики своего инстанса, postgres — общий бюджет для всех инстансов (rate-limit.store).
+ */
+public interface RateLimitStore {
+
+    /**
+     * Учитывает запрос клиента. 0 — запрос разрешён, иначе сколько миллисекунд клиенту ждать
+     */
+    long tryAcquire(RateLimitPolicy policy, String clientKey);
+}
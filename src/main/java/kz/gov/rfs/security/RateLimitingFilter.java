@@ -5,7 +5,10 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import kz.gov.rfs.util.ClientIp;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -13,37 +16,64 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Ограничение частоты запросов по IP с отдельными политиками для групп маршрутов.
+ */
 @Slf4j
 @Component
 public class RateLimitingFilter extends OncePerRequestFilter {
 
-    // IP -> список timestamp запросов
-    private final Map<String, ConcurrentHashMap<Long, Integer>> requestCounts = new ConcurrentHashMap<>();
-
-    // Настройки rate limiting
-    private static final int MAX_REQUESTS_PER_MINUTE = 100; // 100 запросов в минуту
-    private static final int MAX_LOGIN_ATTEMPTS_PER_MINUTE = 5; // 5 попыток логина в минуту
-    private static final long TIME_WINDOW_MS = 60_000; // 1 минута
+    private final RateLimitStore rateLimitStore;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+
+    private final RateLimitPolicy loginPolicy;
+    private final RateLimitPolicy searchPolicy;
+    private final RateLimitPolicy uploadPolicy;
+    private final RateLimitPolicy uploadChunkPolicy;
+    private final RateLimitPolicy publicGetPolicy;
+    private final RateLimitPolicy defaultPolicy;
+
+    public RateLimitingFilter(RateLimitStore rateLimitStore, Environment environment,
+                              MeterRegistry meterRegistry, ObjectMapper objectMapper) {
+        this.rateLimitStore = rateLimitStore;
+        this.objectMapper = objectMapper;
+        this.enabled = environment.getProperty("rate-limit.enabled", Boolean.class, true);
+
+        // Значения по умолчанию: строгий лимит на логин, 100 запросов в минуту для остального
+        this.loginPolicy = RateLimitPolicy.fromEnvironment("login", 5, 5, environment, meterRegistry);
+        this.searchPolicy = RateLimitPolicy.fromEnvironment("search", 20, 30, environment, meterRegistry);
+        this.uploadPolicy = RateLimitPolicy.fromEnvironment("uploads", 10, 20, environment, meterRegistry);
+        // Большой документ — десятки частей подряд; отдельный бюджет, чтобы не упираться в лимит обычных загрузок
+        this.uploadChunkPolicy = RateLimitPolicy.fromEnvironment("upload-chunks", 60, 120, environment, meterRegistry);
+        this.publicGetPolicy = RateLimitPolicy.fromEnvironment("public-get", 100, 300, environment, meterRegistry);
+        this.defaultPolicy = RateLimitPolicy.fromEnvironment("default", 100, 100, environment, meterRegistry);
+
+        log.info("✅ Rate limiting {}: {}, {}, {}, {}, {}, {}", enabled ? "enabled" : "disabled",
+                loginPolicy, searchPolicy, uploadPolicy, uploadChunkPolicy, publicGetPolicy, defaultPolicy);
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
+        if (!enabled) {
+            filterChain.doFilter(request, response);
+            return;
+        }
 
-        String clientIP = getClientIP(request);
-        String requestURI = request.getRequestURI();
-
-        // Особо строгие ограничения для /api/auth/login
-        int maxRequests = requestURI.equals("/api/auth/login")
-                ? MAX_LOGIN_ATTEMPTS_PER_MINUTE
-                : MAX_REQUESTS_PER_MINUTE;
+        String clientIP = ClientIp.resolve(request);
+        RateLimitPolicy policy = resolvePolicy(request);
 
-        if (isRateLimited(clientIP, maxRequests)) {
-            log.warn("🚨 SECURITY: Rate limit exceeded for IP: {} on {}", clientIP, requestURI);
+        long retryAfterMs = rateLimitStore.tryAcquire(policy, clientIP);
+        if (retryAfterMs > 0) {
+            policy.recordRejected();
+            log.warn("🚨 SECURITY: Rate limit '{}' exceeded for IP: {} on {}",
+                    policy.getName(), clientIP, request.getRequestURI());
 
             response.setStatus(429); // 429 Too Many Requests
+            response.setHeader("Retry-After", String.valueOf((retryAfterMs + 999) / 1000));
             response.setContentType(MediaType.APPLICATION_JSON_VALUE);
 
             Map<String, Object> errorResponse = Map.of(
@@ -53,54 +83,35 @@ public class RateLimitingFilter extends OncePerRequestFilter {
                     "timestamp", Instant.now().toString()
             );
 
-            new ObjectMapper().writeValue(response.getOutputStream(), errorResponse);
+            objectMapper.writeValue(response.getOutputStream(), errorResponse);
             return;
         }
 
         filterChain.doFilter(request, response);
     }
 
-    private boolean isRateLimited(String clientIP, int maxRequests) {
-        long currentMinute = System.currentTimeMillis() / TIME_WINDOW_MS;
+    private RateLimitPolicy resolvePolicy(HttpServletRequest request) {
+        String uri = request.getRequestURI();
 
-        requestCounts.putIfAbsent(clientIP, new ConcurrentHashMap<>());
-        ConcurrentHashMap<Long, Integer> ipRequests = requestCounts.get(clientIP);
-
-        // Очистка старых записей (старше 2 минут)
-        ipRequests.entrySet().removeIf(entry ->
-                entry.getKey() < currentMinute - 2
-        );
-
-        // Увеличение счетчика для текущей минуты
-        int count = ipRequests.merge(currentMinute, 1, Integer::sum);
-
-        return count > maxRequests;
-    }
-
-    private String getClientIP(HttpServletRequest request) {
-        // Проверка заголовков прокси
-        String ip = request.getHeader("X-Forwarded-For");
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("X-Real-IP");
+        if (uri.equals("/api/auth/login") || uri.equals("/api/auth/refresh")) {
+            return loginPolicy;
         }
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getRemoteAddr();
+        // Создание сессии — как обычная загрузка; части и статус сессии — по отдельному лимиту
+        if (uri.equals("/api/upload/sessions") && "POST".equals(request.getMethod())) {
+            return uploadPolicy;
         }
-
-        // Если X-Forwarded-For содержит несколько IP (через запятую), берем первый
-        if (ip != null && ip.contains(",")) {
-            ip = ip.split(",")[0].trim();
+        if (uri.startsWith("/api/upload/sessions")) {
+            return uploadChunkPolicy;
         }
-
-        return ip;
-    }
-
-    // Метод для очистки кеша (можно вызывать по расписанию)
-    public void clearOldEntries() {
-        long currentMinute = System.currentTimeMillis() / TIME_WINDOW_MS;
-        requestCounts.entrySet().removeIf(entry ->
-                entry.getValue().keySet().stream().allMatch(minute -> minute < currentMinute - 5)
-        );
-        log.debug("Cleared old rate limiting entries. Current size: {}", requestCounts.size());
+        if (uri.startsWith("/api/upload")) {
+            return uploadPolicy;
+        }
+        if (uri.contains("/search")) {
+            return searchPolicy;
+        }
+        if ("GET".equals(request.getMethod())) {
+            return publicGetPolicy;
+        }
+        return defaultPolicy;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package kz.gov.rfs.security;
+
+/**
+ * Token bucket одного клиента: capacity запросов «про запас», пополнение refillPerMinute в минуту.
+ * Состояние — два примитива под монитором бакета, проверка не создаёт объектов.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(int capacity, int refillPerMinute, long nowNanos) {
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerMinute / 60_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * 0 — запрос разрешён, иначе сколько наносекунд ждать до следующего токена
+     */
+    synchronized long tryAcquire(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+}
@@ -0,0 +1,148 @@
+package kz.gov.rfs.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import kz.gov.rfs.entity.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Актуальные версии токенов активных пользователей (users.token_version) в памяти.
+ * Access-токен принимается, только если его claim "ver" совпадает с версией пользователя —
+ * так фильтр не ходит в БД, а отзыв токенов (смена роли, блокировка, пароль, logout)
+ * доходит до всех инстансов не позже чем через jwt.token-version.refresh-ms.
+ */
+@Slf4j
+@Component
+public class TokenVersionStore {
+
+    private static final String LOAD_SQL = "SELECT id, token_version FROM users WHERE is_active = true";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JwtPrincipalCache principalCache;
+
+    // Заменяется целиком при перезагрузке; отсутствие пользователя = удалён или заблокирован
+    private volatile Map<Long, Integer> versions = Map.of();
+    // Изменения, пришедшие во время загрузки снимка (null — версия удалена); null вне перезагрузки. Под this
+    private Map<Long, Integer> appliedDuringReload;
+
+    public TokenVersionStore(JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             JwtPrincipalCache principalCache,
+                             MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.principalCache = principalCache;
+
+        Gauge.builder("jwt.token-versions.size", this, store -> store.versions.size())
+                .description("Active users with a known access token version")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        reload();
+        log.info("✅ Token versions loaded for {} active users", versions.size());
+    }
+
+    /**
+     * Запрос идёт без блокировки, подмена снимка — под той же блокировкой, что и apply().
+     * Снимок мог быть прочитан до коммита, который уже применён локально, поэтому такие изменения
+     * накладываются поверх: версия — большая из двух, удаление сохраняется
+     */
+    @Scheduled(fixedDelayString = "${jwt.token-version.refresh-ms:10000}")
+    public void reload() {
+        synchronized (this) {
+            appliedDuringReload = new HashMap<>();
+        }
+        try {
+            Map<Long, Integer> loaded = new HashMap<>();
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(LOAD_SQL, rs -> {
+                loaded.put(rs.getLong("id"), rs.getInt("token_version"));
+            }));
+            synchronized (this) {
+                appliedDuringReload.forEach((userId, version) -> {
+                    if (version != null) {
+                        loaded.merge(userId, version, Math::max);
+                    } else {
+                        loaded.remove(userId);
+                    }
+                });
+                versions = Map.copyOf(loaded);
+            }
+        } catch (Exception e) {
+            // Остаёмся на последнем успешно загруженном снимке
+            log.error("❌ Failed to reload token versions: {}", e.getMessage());
+        } finally {
+            synchronized (this) {
+                appliedDuringReload = null;
+            }
+        }
+    }
+
+    public boolean isCurrent(Long userId, Integer version) {
+        return userId != null && version != null && version.equals(versions.get(userId));
+    }
+
+    /**
+     * Отзывает все выданные access-токены пользователя. Вызывается до сохранения сущности;
+     * локальный снимок обновляется после коммита, остальные инстансы подхватят при перезагрузке
+     */
+    public void revoke(User user) {
+        user.revokeTokens();
+        track(user);
+    }
+
+    /**
+     * Новый или только что вошедший пользователь — не ждём плановой перезагрузки
+     */
+    public void track(User user) {
+        afterCommit(() -> apply(user.getId(), user.getIsActive() ? user.getTokenVersion() : null,
+                user.getUsername()));
+    }
+
+    /**
+     * Пользователь удалён — его токены больше не принимаются
+     */
+    public void remove(User user) {
+        afterCommit(() -> apply(user.getId(), null, user.getUsername()));
+    }
+
+    private synchronized void apply(Long userId, Integer version, String username) {
+        Map<Long, Integer> updated = new HashMap<>(versions);
+        if (version != null) {
+            updated.put(userId, version);
+        } else {
+            updated.remove(userId);
+        }
+        versions = Map.copyOf(updated);
+        if (appliedDuringReload != null) {
+            appliedDuringReload.put(userId, version);
+        }
+        principalCache.evictUser(username);
+        log.debug("Token version updated for user: {}", username);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
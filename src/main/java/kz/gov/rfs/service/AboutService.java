@@ -1,9 +1,12 @@
 package kz.gov.rfs.service;
 
+import kz.gov.rfs.config.CacheConfig;
 import kz.gov.rfs.entity.About;
 import kz.gov.rfs.entity.AboutSection;
 import kz.gov.rfs.repository.AboutRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
@@ -13,26 +16,31 @@ import java.util.List;
 public class AboutService {
     private final AboutRepository aboutRepository;
 
+    @Cacheable(value = CacheConfig.ABOUT, key = "'section:' + #section")
     public List<About> getAboutBySection(AboutSection section) {
         return aboutRepository.findBySectionOrderByDisplayOrder(section);
     }
 
+    @Cacheable(value = CacheConfig.ABOUT, key = "'key:' + #sectionKey")
     public About getAboutBySectionKey(String sectionKey) {
         return aboutRepository.findBySectionKey(sectionKey)
                 .orElseThrow(() -> new RuntimeException("About section not found with key: " + sectionKey));
     }
 
+    @Cacheable(value = CacheConfig.ABOUT, key = "#id")
     public About getAboutById(Long id) {
         return aboutRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("About not found with id: " + id));
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.ABOUT, allEntries = true)
     public About createAbout(About about) {
         return aboutRepository.save(about);
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.ABOUT, allEntries = true)
     public About updateAbout(Long id, About aboutDetails) {
         About about = getAboutById(id);
         about.setTitleRu(aboutDetails.getTitleRu());
@@ -47,6 +55,7 @@ public class AboutService {
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.ABOUT, allEntries = true)
     public void deleteAbout(Long id) {
         aboutRepository.deleteById(id);
     }
@@ -5,6 +5,7 @@ import kz.gov.rfs.entity.Role;
 import kz.gov.rfs.entity.User;
 import kz.gov.rfs.repository.RefreshTokenRepository;
 import kz.gov.rfs.repository.UserRepository;
+import kz.gov.rfs.security.TokenVersionStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -22,6 +23,7 @@ public class AdminService {
     private final NewsService newsService;
     private final ServiceService serviceService;
     private final ProcurementService procurementService;
+    private final TokenVersionStore tokenVersionStore;
 
     public List<User> getAllUsers() {
         return userRepository.findAll();
@@ -42,7 +44,9 @@ public class AdminService {
         }
         user.setPassword(passwordEncoder.encode(user.getPassword()));
         user.setIsActive(true);
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        tokenVersionStore.track(saved);
+        return saved;
     }
 
     @Transactional
@@ -55,10 +59,16 @@ public class AdminService {
             throw new RuntimeException("Email already exists");
         }
 
+        boolean accessChanged = user.getRole() != userDetails.getRole()
+                || !user.getIsActive().equals(userDetails.getIsActive());
+
         user.setEmail(userDetails.getEmail());
         user.setRole(userDetails.getRole());
         user.setIsActive(userDetails.getIsActive());
 
+        if (accessChanged) {
+            tokenVersionStore.revoke(user);
+        }
         return userRepository.save(user);
     }
 
@@ -66,6 +76,7 @@ public class AdminService {
     public User updateUserRole(Long id, Role role) {
         User user = getUserById(id);
         user.setRole(role);
+        tokenVersionStore.revoke(user);
         return userRepository.save(user);
     }
 
@@ -76,13 +87,11 @@ public class AdminService {
 
         // ИСПРАВЛЕНО: правильное удаление токена при деактивации
         if (!user.getIsActive()) {
-            User finalUser = user;
-            refreshTokenRepository.findByUser(user).ifPresent(token -> {
-                refreshTokenRepository.delete(token);
-                log.info("Deleted refresh token for deactivated user: {}", finalUser.getUsername());
-            });
+            int deleted = refreshTokenRepository.deleteByUserId(user.getId());
+            log.info("Deleted {} refresh tokens for deactivated user: {}", deleted, user.getUsername());
         }
 
+        tokenVersionStore.revoke(user);
         return userRepository.save(user);
     }
 
@@ -91,13 +100,11 @@ public class AdminService {
         User user = getUserById(id);
 
         // ИСПРАВЛЕНО: удаляем токен перед удалением пользователя
-        User finalUser = user;
-        refreshTokenRepository.findByUser(user).ifPresent(token -> {
-            refreshTokenRepository.delete(token);
-            log.info("Deleted refresh token for user being deleted: {}", finalUser.getUsername());
-        });
+        int deleted = refreshTokenRepository.deleteByUserId(user.getId());
+        log.info("Deleted {} refresh tokens for user being deleted: {}", deleted, user.getUsername());
 
         userRepository.deleteById(id);
+        tokenVersionStore.remove(user);
     }
 
     @Transactional
@@ -124,12 +131,10 @@ public class AdminService {
         User savedUser = userRepository.save(user);
 
         // ИСПРАВЛЕНО: правильное удаление токена после смены пароля
-        User finalUser = savedUser;
-        refreshTokenRepository.findByUser(savedUser).ifPresent(token -> {
-            refreshTokenRepository.delete(token);
-            log.info("Deleted refresh token after password change for user: {}", finalUser.getUsername());
-        });
+        int deleted = refreshTokenRepository.deleteByUserId(savedUser.getId());
+        log.info("Deleted {} refresh tokens after password change for user: {}", deleted, savedUser.getUsername());
 
+        tokenVersionStore.revoke(savedUser);
         log.info("Password changed successfully for user: {}", savedUser.getUsername());
 
         return savedUser;
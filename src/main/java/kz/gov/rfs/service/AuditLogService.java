@@ -1,13 +1,15 @@
 package kz.gov.rfs.service;
 
+import kz.gov.rfs.dto.CursorPage;
 import kz.gov.rfs.entity.AuditLog;
 import kz.gov.rfs.entity.User;
 import kz.gov.rfs.repository.AuditLogRepository;
+import kz.gov.rfs.util.PageCursor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -15,34 +17,40 @@ import java.util.List;
 @RequiredArgsConstructor
 public class AuditLogService {
     private final AuditLogRepository auditLogRepository;
+    private final AuditLogWriter auditLogWriter;
 
-    @Transactional
     public void log(User user, String action, String entityType, Long entityId, String details) {
-        AuditLog log = new AuditLog();
-        log.setUser(user);
-        log.setAction(action);
-        log.setEntityType(entityType);
-        log.setEntityId(entityId);
-        log.setDetails(details);
-        auditLogRepository.save(log);
+        log(user, action, entityType, entityId, details, null);
     }
 
-    @Transactional
+    /**
+     * Запись уходит в очередь AuditLogWriter и сохраняется асинхронно, вне транзакции запроса
+     */
     public void log(User user, String action, String entityType, Long entityId, String details, String ipAddress) {
-        AuditLog log = new AuditLog();
-        log.setUser(user);
-        log.setAction(action);
-        log.setEntityType(entityType);
-        log.setEntityId(entityId);
-        log.setDetails(details);
-        log.setIpAddress(ipAddress);
-        auditLogRepository.save(log);
+        auditLogWriter.enqueue(new AuditLogWriter.AuditEvent(
+                user != null ? user.getId() : null,
+                action,
+                entityType,
+                entityId,
+                details,
+                ipAddress,
+                LocalDateTime.now()));
     }
 
     public Page<AuditLog> getAllLogs(Pageable pageable) {
         return auditLogRepository.findAllByOrderByTimestampDesc(pageable);
     }
 
+    public CursorPage<AuditLog> getLogsAfter(String after, int size) {
+        PageCursor cursor = PageCursor.decode(after);
+        int pageSize = PageCursor.clampSize(size);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<AuditLog> rows = cursor == null
+                ? auditLogRepository.findLatestFirst(limit)
+                : auditLogRepository.findLatestAfter(cursor.sortValueAsDateTime(), cursor.id(), limit);
+        return CursorPage.of(rows, pageSize, log -> PageCursor.encode(log.getTimestamp(), log.getId()));
+    }
+
     public List<AuditLog> getLogsByUser(Long userId) {
         return auditLogRepository.findByUserIdOrderByTimestampDesc(userId);
     }
@@ -0,0 +1,375 @@
+package kz.gov.rfs.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронная запись журнала аудита.
+ * События копятся в ограниченной очереди, отдельный поток пишет их пачками (JDBC batch).
+ * Если очередь переполнена или БД недоступна — события дописываются в локальный spill-файл (NDJSON)
+ * и повторно отправляются в БД, когда она снова доступна.
+ * Нечитаемые строки spill-файла и события, отклонённые ограничениями БД,
+ * откладываются в audit-spill-rejected.ndjson для ручного разбора.
+ */
+@Slf4j
+@Service
+public class AuditLogWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO audit_logs " +
+            "(user_id, action, entity_type, entity_id, details, ip_address, \"timestamp\") " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String ACTIVE_SPILL_FILE = "audit-spill.ndjson";
+    private static final String PENDING_SUFFIX = ".pending";
+    private static final String REJECTED_SPILL_FILE = "audit-spill-rejected.ndjson";
+    private static final long SPILL_RETRY_INTERVAL_MS = 30_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final BlockingQueue<AuditEvent> queue;
+    private final int batchSize;
+    private final long offerTimeoutMs;
+    private final Path spillDir;
+    private final Object spillLock = new Object();
+
+    private final Counter writtenCounter;
+    private final Counter overflowCounter;
+    private final Counter spilledCounter;
+
+    private volatile boolean running;
+    private Thread writerThread;
+    private long lastSpillRetry;
+
+    public record AuditEvent(Long userId, String action, String entityType, Long entityId,
+                             String details, String ipAddress, LocalDateTime timestamp) {
+    }
+
+    public AuditLogWriter(JdbcTemplate jdbcTemplate,
+                          TransactionTemplate transactionTemplate,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${audit.queue.capacity:10000}") int queueCapacity,
+                          @Value("${audit.queue.offer-timeout-ms:50}") long offerTimeoutMs,
+                          @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:25}") int batchSize,
+                          @Value("${audit.spill-dir:audit-spill}") String spillDir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.batchSize = batchSize;
+        this.spillDir = Paths.get(spillDir).toAbsolutePath().normalize();
+
+        Gauge.builder("audit.queue.size", queue, BlockingQueue::size)
+                .description("Audit events waiting to be written")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("audit.events.written")
+                .description("Audit events written to the database")
+                .register(meterRegistry);
+        this.overflowCounter = Counter.builder("audit.queue.overflow")
+                .description("Audit events that did not fit into the queue and were spilled to disk")
+                .register(meterRegistry);
+        this.spilledCounter = Counter.builder("audit.events.spilled")
+                .description("Audit events written to the local spill file")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::runWriter, "audit-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("✅ Audit log writer started (batch size: {}, queue capacity: {})",
+                batchSize, queue.remainingCapacity());
+    }
+
+    /**
+     * Не блокирует запрос дольше offer-timeout: при переполнении событие уходит в spill-файл
+     */
+    public void enqueue(AuditEvent event) {
+        try {
+            if (queue.offer(event, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        overflowCounter.increment();
+        log.warn("⚠️ Audit queue is full, spilling event to disk: {} {}", event.action(), event.entityType());
+        spill(List.of(event));
+    }
+
+    private void runWriter() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                AuditEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    List<AuditEvent> failed = write(batch);
+                    batch.clear();
+                    if (failed.isEmpty()) {
+                        replaySpillIfDue();
+                    } else {
+                        spill(failed);
+                    }
+                } else {
+                    replaySpillIfDue();
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    continue;
+                }
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("❌ Unexpected error in audit log writer", e);
+                // Непустая пачка ещё не записана — не теряем её
+                if (!batch.isEmpty()) {
+                    spill(batch);
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return события, которые не записаны из-за недоступности БД — их нужно сохранить на диск
+     */
+    private List<AuditEvent> write(List<AuditEvent> batch) {
+        try {
+            insert(batch);
+            return List.of();
+        } catch (DataIntegrityViolationException e) {
+            // Одна «плохая» запись (например, удалённый пользователь) не должна ронять всю пачку
+            log.warn("Audit batch rejected ({}), retrying row by row", e.getMessage());
+            List<AuditEvent> invalid = new ArrayList<>();
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    AuditEvent event = batch.get(i);
+                    try {
+                        insert(List.of(event));
+                    } catch (DataIntegrityViolationException rowError) {
+                        log.error("❌ Audit event rejected by the database {}: {}", event, rowError.getMessage());
+                        invalid.add(event);
+                    } catch (Exception rowError) {
+                        log.error("❌ Failed to write {} audit events: {}", batch.size() - i, rowError.getMessage());
+                        return List.copyOf(batch.subList(i, batch.size()));
+                    }
+                }
+                return List.of();
+            } finally {
+                rejectEvents(invalid);
+            }
+        } catch (Exception e) {
+            log.error("❌ Failed to write {} audit events: {}", batch.size(), e.getMessage());
+            return List.copyOf(batch);
+        }
+    }
+
+    private void insert(List<AuditEvent> batch) {
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batchSize, (ps, event) -> {
+                    ps.setObject(1, event.userId());
+                    ps.setString(2, event.action());
+                    ps.setString(3, event.entityType());
+                    ps.setObject(4, event.entityId());
+                    ps.setString(5, event.details());
+                    ps.setString(6, event.ipAddress());
+                    ps.setTimestamp(7, Timestamp.valueOf(event.timestamp()));
+                }));
+        writtenCounter.increment(batch.size());
+    }
+
+    private void spill(List<AuditEvent> events) {
+        String lines = toLines(events);
+        synchronized (spillLock) {
+            try {
+                Files.createDirectories(spillDir);
+                write(spillDir.resolve(ACTIVE_SPILL_FILE), lines, StandardOpenOption.APPEND);
+                spilledCounter.increment(events.size());
+            } catch (IOException e) {
+                log.error("❌ Cannot write audit spill file, {} events lost", events.size(), e);
+            }
+        }
+    }
+
+    private String toLines(List<AuditEvent> events) {
+        StringBuilder lines = new StringBuilder();
+        for (AuditEvent event : events) {
+            try {
+                lines.append(objectMapper.writeValueAsString(event)).append('\n');
+            } catch (IOException e) {
+                log.error("❌ Cannot serialize audit event {}", event, e);
+            }
+        }
+        return lines.toString();
+    }
+
+    private static void write(Path file, String content, StandardOpenOption mode) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    private void replaySpillIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastSpillRetry < SPILL_RETRY_INTERVAL_MS) {
+            return;
+        }
+        lastSpillRetry = now;
+
+        synchronized (spillLock) {
+            Path active = spillDir.resolve(ACTIVE_SPILL_FILE);
+            try {
+                if (Files.exists(active)) {
+                    Files.move(active, spillDir.resolve("audit-spill-" + now + ".ndjson" + PENDING_SUFFIX),
+                            StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                log.error("❌ Cannot rotate audit spill file", e);
+                return;
+            }
+        }
+
+        if (!Files.isDirectory(spillDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> pending = Files.newDirectoryStream(spillDir, "*" + PENDING_SUFFIX)) {
+            for (Path file : pending) {
+                if (!replay(file)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            log.error("❌ Cannot list audit spill directory", e);
+        }
+    }
+
+    private boolean replay(Path file) throws IOException {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        StringBuilder rejected = new StringBuilder();
+        int replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line != null && !line.isBlank()) {
+                    try {
+                        batch.add(objectMapper.readValue(line, AuditEvent.class));
+                    } catch (IOException e) {
+                        log.error("❌ Unreadable audit spill line in {}: {}", file.getFileName(), e.getMessage());
+                        rejected.append(line).append('\n');
+                    }
+                }
+                if (batch.size() == batchSize || (line == null && !batch.isEmpty())) {
+                    List<AuditEvent> failed = write(batch);
+                    if (!failed.isEmpty()) {
+                        // В файле остаются только незаписанные события, иначе записанные пачки повторятся
+                        keepRemainder(file, failed, reader);
+                        reject(rejected);
+                        return false;
+                    }
+                    replayed += batch.size();
+                    batch.clear();
+                }
+            } while (line != null);
+        }
+        reject(rejected);
+        Files.delete(file);
+        log.info("✅ Replayed {} spilled audit events from {}", replayed, file.getFileName());
+        return true;
+    }
+
+    /**
+     * Заменяет pending-файл на незаписанный остаток: failed и непрочитанные строки
+     */
+    private void keepRemainder(Path file, List<AuditEvent> failed, BufferedReader unread) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        StringBuilder rest = new StringBuilder(toLines(failed));
+        String line;
+        while ((line = unread.readLine()) != null) {
+            rest.append(line).append('\n');
+        }
+        write(temp, rest.toString(), StandardOpenOption.TRUNCATE_EXISTING);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void reject(CharSequence lines) throws IOException {
+        if (lines.isEmpty()) {
+            return;
+        }
+        synchronized (spillLock) {
+            Files.createDirectories(spillDir);
+            write(spillDir.resolve(REJECTED_SPILL_FILE), lines.toString(), StandardOpenOption.APPEND);
+        }
+        log.warn("⚠️ Rejected audit lines moved to {}", REJECTED_SPILL_FILE);
+    }
+
+    /**
+     * Повторять такие события бессмысленно (например, пользователь уже удалён), но и терять их нельзя
+     */
+    private void rejectEvents(List<AuditEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            reject(toLines(events));
+        } catch (IOException e) {
+            log.error("❌ Cannot write rejected audit events, {} events lost", events.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        log.info("Stopping audit log writer, {} events pending", queue.size());
+        running = false;
+        writerThread.interrupt();
+        writerThread.join(TimeUnit.SECONDS.toMillis(30));
+
+        // Что не успели записать — на диск, будет отправлено при следующем старте
+        List<AuditEvent> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            spill(rest);
+        }
+    }
+}
@@ -2,11 +2,16 @@ package kz.gov.rfs.service;
 
 import kz.gov.rfs.dto.AuthRequest;
 import kz.gov.rfs.dto.AuthResponse;
+import kz.gov.rfs.dto.RotatedRefreshToken;
 import kz.gov.rfs.entity.RefreshToken;
 import kz.gov.rfs.entity.User;
 import kz.gov.rfs.repository.RefreshTokenRepository;
 import kz.gov.rfs.repository.UserRepository;
 import kz.gov.rfs.security.JwtUtil;
+import kz.gov.rfs.security.LoginAttemptStore;
+import kz.gov.rfs.security.LoginAttemptStore.LoginState;
+import kz.gov.rfs.security.TokenVersionStore;
+import kz.gov.rfs.util.TokenHash;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -19,11 +24,11 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
@@ -35,18 +40,25 @@ public class AuthService {
     private final RefreshTokenRepository refreshTokenRepository;
     private final JwtUtil jwtUtil;
     private final AuditLogService auditLogService;
+    private final TokenVersionStore tokenVersionStore;
+    private final LoginAttemptStore loginAttemptStore;
+    private final TransactionTemplate transactionTemplate;
 
     @Value("${jwt.refresh-expiration}")
     private Long refreshTokenDuration;
 
-    private final Map<String, Integer> loginAttempts = new ConcurrentHashMap<>();
-    private final Map<String, Instant> lockoutTime = new ConcurrentHashMap<>();
+    @Value("${jwt.refresh-max-sessions:5}")
+    private int maxSessions;
 
-    private static final int MAX_ATTEMPTS = 10;
-    private static final long LOCKOUT_DURATION_MINUTES = 5;
+    @Value("${jwt.refresh-reuse-grace-seconds:10}")
+    private long refreshReuseGraceSeconds;
 
-    @Transactional
-    public AuthResponse login(AuthRequest request) {
+
+    /**
+     * Проверка пароля — вне транзакции: пока поток ждёт очередь хэширования (до hashing.timeout-ms),
+     * соединение из пула не занято. Транзакция открывается только для записей после успешной проверки
+     */
+    public AuthResponse login(AuthRequest request, String deviceName, String ipAddress) {
         String username = request.getUsername();
         checkLoginAttempts(username);
 
@@ -61,17 +73,18 @@ public class AuthService {
                 throw new LockedException("Account is locked");
             }
 
-            user.setLastLogin(LocalDateTime.now());
-            userRepository.save(user);
-
-            String accessToken = jwtUtil.generateToken(authentication);
-
             log.info("🔑 Creating refresh token for user: {}", username);
-            String refreshToken = createRefreshTokenSeparate(user.getId());
+            String refreshToken = transactionTemplate.execute(status -> {
+                user.setLastLogin(LocalDateTime.now());
+                userRepository.save(user);
+                return createRefreshTokenSeparate(user.getId(), deviceName, ipAddress);
+            });
             log.info("✅ Refresh token created successfully");
 
-            loginAttempts.remove(username);
-            lockoutTime.remove(username);
+            tokenVersionStore.track(user);
+            String accessToken = jwtUtil.generateToken(authentication);
+
+            loginAttemptStore.reset(username);
 
             auditLogService.log(user, "LOGIN", "User", user.getId(), "User logged in successfully");
             log.info("User {} logged in successfully", username);
@@ -99,136 +112,163 @@ public class AuthService {
     }
 
     private void checkLoginAttempts(String username) {
-        if (lockoutTime.containsKey(username)) {
-            Instant lockout = lockoutTime.get(username);
-            if (Instant.now().isBefore(lockout)) {
-                long secondsLeft = (lockout.toEpochMilli() - Instant.now().toEpochMilli()) / 1000;
-                log.warn("Account {} is locked. Seconds left: {}", username, secondsLeft);
-                throw new LockedException(String.format(
-                        "Too many failed attempts. Please try again in %d seconds", secondsLeft
-                ));
-            } else {
-                log.info("Lockout expired for user: {}, clearing attempts", username);
-                loginAttempts.remove(username);
-                lockoutTime.remove(username);
-            }
+        Instant lockout = loginAttemptStore.getLockedUntil(username);
+        if (lockout != null) {
+            long secondsLeft = (lockout.toEpochMilli() - Instant.now().toEpochMilli()) / 1000;
+            log.warn("Account {} is locked. Seconds left: {}", username, secondsLeft);
+            throw new LockedException(String.format(
+                    "Too many failed attempts. Please try again in %d seconds", secondsLeft
+            ));
         }
     }
 
     private void handleFailedLogin(String username) {
-        int attempts = loginAttempts.getOrDefault(username, 0) + 1;
-        loginAttempts.put(username, attempts);
-        log.warn("Failed login attempt {} for user {}", attempts, username);
-
-        if (attempts >= MAX_ATTEMPTS) {
-            lockoutTime.put(username, Instant.now().plusSeconds(LOCKOUT_DURATION_MINUTES * 60));
-            loginAttempts.remove(username);
-            log.warn("Account {} locked due to {} failed login attempts", username, MAX_ATTEMPTS);
+        LoginState state = loginAttemptStore.recordFailure(username);
+        if (state.lockedUntil() != null) {
+            log.warn("Account {} locked due to too many failed login attempts", username);
+        } else {
+            log.warn("Failed login attempt {} for user {}", state.failures(), username);
         }
     }
 
     /**
      * КРИТИЧЕСКИ ВАЖНО: Создание токена в ОТДЕЛЬНОЙ транзакции
-     * Это гарантирует, что токен сохранится даже если основная транзакция откатится
+     * Это гарантирует, что токен сохранится даже если основная транзакция откатится.
+     * Каждый вход — новая сессия; сверх jwt.refresh-max-sessions удаляются давно не использованные
      */
     @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public String createRefreshTokenSeparate(Long userId) {
+    public String createRefreshTokenSeparate(Long userId, String deviceName, String ipAddress) {
         log.info("📝 Starting token creation for user ID: {}", userId);
 
-        // Удаляем старый токен если есть
-        try {
-            int deleted = refreshTokenRepository.deleteByUserId(userId);
-            log.info("Deleted {} old tokens for user {}", deleted, userId);
-        } catch (Exception e) {
-            log.warn("Error deleting old token: {}", e.getMessage());
-        }
-
-        // Получаем свежего пользователя из базы
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found: " + userId));
+        String rawToken = UUID.randomUUID().toString();
+        Instant now = Instant.now();
 
-        // Создаем новый токен
         RefreshToken token = new RefreshToken();
-        token.setUser(user);
-        token.setToken(UUID.randomUUID().toString());
-        token.setExpiryDate(Instant.now().plusMillis(refreshTokenDuration));
+        token.setUser(userRepository.getReferenceById(userId));
+        token.setTokenHash(TokenHash.sha256Hex(rawToken));
+        token.setFamilyId(UUID.randomUUID().toString());
+        // Оба значения приходят из заголовков запроса: обрезаем под размер колонок (255 и 45)
+        token.setDeviceName(truncate(deviceName, 255));
+        token.setIpAddress(truncate(ipAddress, 45));
+        token.setCreatedAt(now);
+        token.setLastUsedAt(now);
+        token.setExpiryDate(now.plusMillis(refreshTokenDuration));
 
         RefreshToken saved = refreshTokenRepository.saveAndFlush(token);
 
-        log.info("✅ Token saved with ID: {}, token: {}", saved.getId(), saved.getToken().substring(0, 8) + "...");
+        int evicted = refreshTokenRepository.deleteOldestSessions(userId, maxSessions);
+        if (evicted > 0) {
+            log.info("Session limit reached for user {}, removed {} oldest sessions", userId, evicted);
+        }
+
+        log.info("✅ Token saved with ID: {}, family: {}", saved.getId(), saved.getFamilyId());
 
-        return saved.getToken();
+        return rawToken;
     }
 
-    @Transactional
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    /**
+     * Ротация одним UPDATE ... RETURNING: без блокировок между транзакциями и без повторной загрузки пользователя.
+     * Каждый вызов репозитория — своя короткая транзакция, чтобы отзыв семейства при ошибке не откатывался
+     */
     public AuthResponse refreshToken(String token) {
         log.debug("Attempting to refresh token: {}", token.substring(0, Math.min(8, token.length())) + "...");
 
-        // PESSIMISTIC LOCK: блокирует токен для других транзакций
-        RefreshToken refreshToken = refreshTokenRepository.findByTokenWithLock(token)
-                .orElseThrow(() -> {
-                    log.error("Refresh token not found in database");
-                    return new RuntimeException("Invalid refresh token");
-                });
+        String tokenHash = TokenHash.sha256Hex(token);
+        String newRefreshToken = UUID.randomUUID().toString();
+        RotatedRefreshToken rotated = refreshTokenRepository
+                .rotate(tokenHash, TokenHash.sha256Hex(newRefreshToken), Instant.now().plusMillis(refreshTokenDuration))
+                .orElseThrow(() -> rejectRefresh(tokenHash));
+
+        String newAccessToken = jwtUtil.generateToken(
+                rotated.getUsername(), rotated.getUserId(), rotated.getRole(), rotated.getTokenVersion());
 
-        log.debug("Found refresh token for user: {}, expires at: {}",
-                refreshToken.getUser().getUsername(), refreshToken.getExpiryDate());
+        log.info("Token refreshed successfully for user {}", rotated.getUsername());
 
-        if (refreshToken.getExpiryDate().isBefore(Instant.now())) {
+        return AuthResponse.builder()
+                .accessToken(newAccessToken)
+                .refreshToken(newRefreshToken)
+                .userId(rotated.getUserId())
+                .username(rotated.getUsername())
+                .email(rotated.getEmail())
+                .role(rotated.getRole())
+                .build();
+    }
+
+    /**
+     * Путь ошибки ротации: объясняем причину и реагируем на повторное использование старого токена
+     */
+    private RuntimeException rejectRefresh(String tokenHash) {
+        Optional<RefreshToken> current = refreshTokenRepository.findByTokenHash(tokenHash);
+        if (current.isPresent()) {
+            RefreshToken refreshToken = current.get();
+            if (!refreshToken.getUser().getIsActive()) {
+                log.error("User account is disabled: {}", refreshToken.getUser().getUsername());
+                return new RuntimeException("Account is disabled");
+            }
             log.error("Refresh token expired for user: {}", refreshToken.getUser().getUsername());
             refreshTokenRepository.delete(refreshToken);
-            throw new RuntimeException("Refresh token expired. Please login again");
+            return new RuntimeException("Refresh token expired. Please login again");
         }
 
-        User user = refreshToken.getUser();
+        // Любое прошлое поколение семейства, не только последнее заменённое
+        Optional<RefreshToken> rotated = refreshTokenRepository.findByUsedTokenHash(tokenHash);
+        if (rotated.isPresent()) {
+            RefreshToken family = rotated.get();
+            User user = family.getUser();
+
+            // Две вкладки обновили токен одновременно — это не кража
+            Instant usedAt = refreshTokenRepository.findUsedAt(tokenHash).orElse(null);
+            if (usedAt != null && usedAt.isAfter(Instant.now().minusSeconds(refreshReuseGraceSeconds))) {
+                log.warn("Concurrent refresh with an already rotated token for user: {}", user.getUsername());
+                return new RuntimeException("Invalid refresh token");
+            }
 
-        if (!user.getIsActive()) {
-            log.error("User account is disabled: {}", user.getUsername());
-            throw new RuntimeException("Account is disabled");
+            log.warn("🚨 SECURITY: Refresh token reuse detected for user {}, revoking token family {}",
+                    user.getUsername(), family.getFamilyId());
+            refreshTokenRepository.deleteByFamilyId(family.getFamilyId());
+            tokenVersionStore.revoke(user);
+            userRepository.save(user);
+            auditLogService.log(user, "TOKEN_REUSE", "User", user.getId(),
+                    "Refresh token reuse detected, session revoked");
+            return new RuntimeException("Invalid refresh token");
         }
 
-        String newAccessToken = jwtUtil.generateTokenFromUsername(user.getUsername());
-
-        // Удаляем старый токен (уже заблокирован, никто другой не может его трогать)
-        refreshTokenRepository.delete(refreshToken);
-        refreshTokenRepository.flush();
-
-        String newRefreshToken = createRefreshTokenSeparate(user.getId());
-
-        log.info("Token refreshed successfully for user {}", user.getUsername());
-
-        return AuthResponse.builder()
-                .accessToken(newAccessToken)
-                .refreshToken(newRefreshToken)
-                .userId(user.getId())
-                .username(user.getUsername())
-                .email(user.getEmail())
-                .role(user.getRole().name())
-                .build();
+        log.error("Refresh token not found in database");
+        return new RuntimeException("Invalid refresh token");
     }
 
+    /**
+     * С refresh-токеном — выход только на этом устройстве (остальные сессии продолжают работать),
+     * без него — выход везде: все сессии удаляются, выданные access-токены перестают приниматься сразу
+     */
     @Transactional
-    public void logout(String username) {
+    public void logout(String username, String refreshToken) {
         log.info("Logout requested for user: {}", username);
 
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        refreshTokenRepository.findByUser(user).ifPresent(token -> {
-            refreshTokenRepository.delete(token);
-            log.debug("Deleted refresh token for user: {}", username);
-        });
+        if (refreshToken != null && !refreshToken.isBlank()) {
+            int deleted = refreshTokenRepository.deleteSession(TokenHash.sha256Hex(refreshToken), user.getId());
+            log.debug("Deleted {} refresh token for user: {}", deleted, username);
+        } else {
+            int deleted = refreshTokenRepository.deleteByUserId(user.getId());
+            log.debug("Deleted {} refresh tokens for user: {}", deleted, username);
+            tokenVersionStore.revoke(user);
+        }
 
-        loginAttempts.remove(username);
-        lockoutTime.remove(username);
+        loginAttemptStore.reset(username);
 
         auditLogService.log(user, "LOGOUT", "User", user.getId(), "User logged out");
         log.info("User {} logged out successfully", username);
     }
 
     public void clearLockout(String username) {
-        loginAttempts.remove(username);
-        lockoutTime.remove(username);
+        loginAttemptStore.reset(username);
         log.info("Cleared lockout for user: {}", username);
     }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package kz.gov.rfs.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Хранилище файлов загрузок по ключу (путь после /uploads/, например ab/cd/&lt;sha256&gt;.pdf).
+ * filesystem — каталог file.upload-dir, s3 — бакет S3-совместимого хранилища (upload.store).
+ */
+public interface BlobStore {
+
+    /**
+     * Сохраняет локальный файл под ключом. Файл source может быть перемещён в хранилище
+     *
+     * @return false — объект с таким ключом уже есть, source не использован
+     */
+    boolean put(String key, Path source, String contentType) throws IOException;
+
+    /**
+     * @throws java.nio.file.NoSuchFileException объекта нет
+     */
+    InputStream open(String key) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    /**
+     * @return false — объекта не было
+     */
+    boolean delete(String key) throws IOException;
+
+    /**
+     * Файл объекта на локальном диске (может не существовать); null — объекты хранятся не локально
+     */
+    Path localPath(String key);
+
+    /**
+     * Временная ссылка на объект в самом хранилище, чтобы байты шли клиенту мимо приложения;
+     * null — файлы отдаются только приложением (см. localPath)
+     *
+     * @param cacheControl Cache-Control, с которым хранилище отдаст объект
+     */
+    DirectLink directLink(String key, String cacheControl);
+
+    /**
+     * @param cacheFor сколько можно кешировать redirect на uri: ссылка останется действительной дольше
+     */
+    record DirectLink(URI uri, Duration cacheFor) {
+    }
+}
@@ -0,0 +1,99 @@
+package kz.gov.rfs.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Удаление большого количества строк порциями.
+ * Каждая порция — отдельная короткая транзакция (короткие блокировки, умеренный WAL),
+ * между порциями пауза, чтобы не забирать ресурсы у рабочего трафика.
+ * Advisory lock по имени задачи гарантирует, что в кластере её выполняет только один инстанс.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChunkedPurger {
+
+    private static final int PROGRESS_LOG_EVERY_CHUNKS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param deleteChunkSql DELETE одной порции; последний параметр — размер порции (LIMIT)
+     * @return сколько строк удалено; -1 — задачу уже выполняет другой инстанс
+     */
+    public long purge(String name, String deleteChunkSql, int chunkSize, long pauseMs, Object... params) {
+        Counter rowsDeleted = Counter.builder("purge.rows.deleted")
+                .tag("purge", name)
+                .description("Rows removed by chunked purge jobs")
+                .register(meterRegistry);
+        Timer duration = Timer.builder("purge.duration")
+                .tag("purge", name)
+                .description("Duration of chunked purge runs")
+                .register(meterRegistry);
+
+        Long result = duration.record(() -> jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            // Соединение берётся из пула с auto-commit=false: коммитим сами после каждой порции
+            if (!ClusterLock.tryLock(connection, name)) {
+                log.info("Purge '{}' is already running on another instance, skipping", name);
+                return -1L;
+            }
+            try {
+                return deleteInChunks(connection, name, deleteChunkSql, chunkSize, pauseMs, params, rowsDeleted);
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                ClusterLock.unlock(connection, name);
+            }
+        }));
+        return result != null ? result : 0;
+    }
+
+    private long deleteInChunks(Connection connection, String name, String sql, int chunkSize, long pauseMs,
+                                Object[] params, Counter rowsDeleted) throws SQLException {
+        long total = 0;
+        int chunks = 0;
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            ps.setInt(params.length + 1, chunkSize);
+
+            int deleted;
+            do {
+                deleted = ps.executeUpdate();
+                connection.commit();
+
+                total += deleted;
+                chunks++;
+                rowsDeleted.increment(deleted);
+                if (chunks % PROGRESS_LOG_EVERY_CHUNKS == 0) {
+                    log.info("Purge '{}' in progress: {} rows in {} chunks", name, total, chunks);
+                }
+
+                if (deleted == chunkSize && pauseMs > 0) {
+                    try {
+                        Thread.sleep(pauseMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        log.warn("Purge '{}' interrupted after {} rows", name, total);
+                        break;
+                    }
+                }
+            } while (deleted == chunkSize);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,62 @@
+package kz.gov.rfs.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Advisory lock PostgreSQL по имени задачи: задачу по расписанию выполняет только один инстанс кластера.
+ * Блокировка уровня сессии держится на отдельном соединении, сама задача работает в своих транзакциях.
+ */
+@Service
+@RequiredArgsConstructor
+public class ClusterLock {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return false — задачу уже выполняет другой инстанс
+     */
+    public boolean runExclusively(String name, Runnable task) {
+        Boolean ran = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            if (!tryLock(connection, name)) {
+                return false;
+            }
+            try {
+                task.run();
+                return true;
+            } finally {
+                unlock(connection, name);
+            }
+        });
+        return Boolean.TRUE.equals(ran);
+    }
+
+    // Соединение из пула работает с auto-commit=false: коммитим сами, чтобы не держать транзакцию открытой
+
+    static boolean tryLock(Connection connection, String name) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_try_advisory_lock(hashtext(?))")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                boolean locked = rs.getBoolean(1);
+                connection.commit();
+                return locked;
+            }
+        }
+    }
+
+    static void unlock(Connection connection, String name) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_advisory_unlock(hashtext(?))")) {
+            ps.setString(1, name);
+            ps.execute();
+            connection.commit();
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package kz.gov.rfs.service;
 
+import kz.gov.rfs.config.CacheConfig;
 import kz.gov.rfs.entity.Contact;
 import kz.gov.rfs.entity.ContactType;
 import kz.gov.rfs.repository.ContactRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
@@ -13,25 +16,30 @@ import java.util.List;
 public class ContactService {
     private final ContactRepository contactRepository;
 
+    @Cacheable(value = CacheConfig.CONTACTS, key = "'all'")
     public List<Contact> getAllContacts() {
         return contactRepository.findAllByOrderByDisplayOrder();
     }
 
+    @Cacheable(value = CacheConfig.CONTACTS, key = "'type:' + #type")
     public List<Contact> getContactsByType(ContactType type) {
         return contactRepository.findByContactTypeOrderByDisplayOrder(type);
     }
 
+    @Cacheable(value = CacheConfig.CONTACTS, key = "#id")
     public Contact getContactById(Long id) {
         return contactRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Contact not found with id: " + id));
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.CONTACTS, allEntries = true)
     public Contact createContact(Contact contact) {
         return contactRepository.save(contact);
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.CONTACTS, allEntries = true)
     public Contact updateContact(Long id, Contact contactDetails) {
         Contact contact = getContactById(id);
         contact.setLabelRu(contactDetails.getLabelRu());
@@ -44,6 +52,7 @@ public class ContactService {
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.CONTACTS, allEntries = true)
     public void deleteContact(Long id) {
         contactRepository.deleteById(id);
     }
@@ -0,0 +1,23 @@
+package kz.gov.rfs.service;
+
+/**
+ * Публичные коллекции контента, для которых считается версия (ETag)
+ */
+public enum ContentCollection {
+    NEWS("news"),
+    SERVICES("services"),
+    PROCUREMENTS("procurements"),
+    CONTACTS("contacts"),
+    DEPARTMENTS("departments"),
+    ABOUT("about");
+
+    private final String table;
+
+    ContentCollection(String table) {
+        this.table = table;
+    }
+
+    public String getTable() {
+        return table;
+    }
+}
@@ -0,0 +1,48 @@
+package kz.gov.rfs.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Дешёвые версии контента для условных GET: один агрегат по таблице или один поиск по PK,
+ * без загрузки сущностей. Общие для всех инстансов, т.к. считаются по данным в БД.
+ */
+@org.springframework.stereotype.Service
+@RequiredArgsConstructor
+public class ContentVersionService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Меняется при любом изменении коллекции: insert/update сдвигают max(updated_at), delete уменьшает count
+     */
+    @Transactional(readOnly = true)
+    public String getCollectionVersion(ContentCollection collection) {
+        return jdbcTemplate.queryForObject(
+                "SELECT max(updated_at), count(*) FROM " + collection.getTable(),
+                (rs, rowNum) -> collection.getTable() + "-" + toMicros(rs.getTimestamp(1)) + "-" + rs.getLong(2));
+    }
+
+    /**
+     * @return null, если записи нет
+     */
+    @Transactional(readOnly = true)
+    public String getItemVersion(ContentCollection collection, Long id) {
+        List<String> versions = jdbcTemplate.query(
+                "SELECT updated_at FROM " + collection.getTable() + " WHERE id = ?",
+                (rs, rowNum) -> collection.getTable() + "-" + id + "-" + toMicros(rs.getTimestamp(1)),
+                id);
+        return versions.isEmpty() ? null : versions.get(0);
+    }
+
+    private static long toMicros(Timestamp timestamp) {
+        if (timestamp == null) {
+            return 0;
+        }
+        return timestamp.getTime() / 1000 * 1_000_000 + timestamp.getNanos() / 1000;
+    }
+}
@@ -1,8 +1,11 @@
 package kz.gov.rfs.service;
 
+import kz.gov.rfs.config.CacheConfig;
 import kz.gov.rfs.entity.Department;
 import kz.gov.rfs.repository.DepartmentRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
@@ -12,21 +15,25 @@ import java.util.List;
 public class DepartmentService {
     private final DepartmentRepository departmentRepository;
 
+    @Cacheable(value = CacheConfig.DEPARTMENTS, key = "'all'")
     public List<Department> getAllDepartments() {
         return departmentRepository.findAllByOrderByDisplayOrder();
     }
 
+    @Cacheable(value = CacheConfig.DEPARTMENTS, key = "#id")
     public Department getDepartmentById(Long id) {
         return departmentRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Department not found with id: " + id));
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.DEPARTMENTS, allEntries = true)
     public Department createDepartment(Department department) {
         return departmentRepository.save(department);
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.DEPARTMENTS, allEntries = true)
     public Department updateDepartment(Long id, Department departmentDetails) {
         Department department = getDepartmentById(id);
         department.setNameRu(departmentDetails.getNameRu());
@@ -40,6 +47,7 @@ public class DepartmentService {
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.DEPARTMENTS, allEntries = true)
     public void deleteDepartment(Long id) {
         departmentRepository.deleteById(id);
     }
@@ -0,0 +1,109 @@
+package kz.gov.rfs.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.UUID;
+
+/**
+ * Файлы в каталоге file.upload-dir. Подходит для одного инстанса или общего диска у всех нод
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "upload.store", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemBlobStore implements BlobStore {
+
+    @Value("${file.upload-dir:uploads}")
+    private String uploadDir;
+
+    private Path root;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        log.info("✅ Uploads are stored in {}", root);
+    }
+
+    @Override
+    public boolean put(String key, Path source, String contentType) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+
+        // С другого диска move — это копирование: чтобы недописанный файл не отдавался, копируем рядом и переименовываем
+        Path staged = source;
+        if (!Files.getFileStore(source).equals(Files.getFileStore(root))) {
+            staged = root.resolve(UploadStorageService.TEMP_PREFIX + UUID.randomUUID());
+            Files.copy(source, staged);
+        }
+        try {
+            // Без REPLACE_EXISTING: ключ уже занят — второй раз не пишем
+            Files.move(staged, target);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } finally {
+            if (staged != source) {
+                Files.deleteIfExists(staged);
+            }
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        Path target = resolve(key);
+        // Только обычные файлы: не директории и не симлинки
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(target, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (!attributes.isRegularFile()) {
+            log.error("🚨 SECURITY: Attempt to delete non-file: {}", key);
+            throw new IllegalArgumentException("Not a regular file: " + key);
+        }
+        return Files.deleteIfExists(target);
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return resolve(key);
+    }
+
+    @Override
+    public DirectLink directLink(String key, String cacheControl) {
+        return null;
+    }
+
+    private Path resolve(String key) {
+        Path target = root.resolve(key).normalize();
+        if (!target.startsWith(root) || target.equals(root)) {
+            log.error("🚨 SECURITY: Path traversal in storage key: {}", key);
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return target;
+    }
+}
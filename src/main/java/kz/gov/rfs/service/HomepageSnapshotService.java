@@ -0,0 +1,157 @@
+package kz.gov.rfs.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kz.gov.rfs.entity.AboutSection;
+import kz.gov.rfs.repository.AboutRepository;
+import kz.gov.rfs.repository.ContactRepository;
+import kz.gov.rfs.repository.DepartmentRepository;
+import kz.gov.rfs.repository.NewsRepository;
+import kz.gov.rfs.repository.ServiceRepository;
+import kz.gov.rfs.util.TokenHash;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Готовый JSON главной страницы (последние новости, услуги, контакты, подразделения, разделы «О нас»)
+ * для каждого языка — в виде байтов, исходных и сжатых gzip.
+ *
+ * Запрос главной не обращается ни к БД, ни к Jackson: отдаются готовые байты.
+ * Раз в homepage.snapshot.refresh-ms сверяются версии коллекций (max(updated_at) + count),
+ * и при изменении снимки пересобираются — так изменения с любого инстанса видны всем.
+ */
+@Slf4j
+@org.springframework.stereotype.Service
+@RequiredArgsConstructor
+public class HomepageSnapshotService {
+
+    private static final List<String> LANGUAGES = List.of("all", "ru", "kk", "en");
+    private static final List<ContentCollection> SOURCES = List.of(ContentCollection.NEWS, ContentCollection.SERVICES,
+            ContentCollection.CONTACTS, ContentCollection.DEPARTMENTS, ContentCollection.ABOUT);
+
+    private final NewsRepository newsRepository;
+    private final ServiceRepository serviceRepository;
+    private final ContactRepository contactRepository;
+    private final DepartmentRepository departmentRepository;
+    private final AboutRepository aboutRepository;
+    private final ContentVersionService contentVersionService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    // Заменяется целиком: читатели без блокировок видят либо старый, либо новый набор снимков
+    private volatile Map<String, Snapshot> snapshots = Map.of();
+    private volatile String version;
+
+    public record Snapshot(String etag, byte[] json, byte[] gzip) {
+    }
+
+    /**
+     * @param lang результат NewsService.resolveLanguage
+     */
+    public Snapshot getSnapshot(String lang) {
+        Snapshot snapshot = snapshots.get(lang);
+        if (snapshot == null) {
+            // Первый запрос до готовности приложения
+            refresh();
+            snapshot = snapshots.get(lang);
+        }
+        if (snapshot == null) {
+            throw new IllegalStateException("Homepage snapshot is not available");
+        }
+        return snapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${homepage.snapshot.refresh-ms:5000}")
+    public synchronized void refresh() {
+        try {
+            // Версия читается до данных: при гонке с записью следующая проверка пересоберёт снимки ещё раз
+            String currentVersion = transactionTemplate.execute(status -> SOURCES.stream()
+                    .map(contentVersionService::getCollectionVersion)
+                    .collect(Collectors.joining(".")));
+            if (currentVersion.equals(version) && !snapshots.isEmpty()) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            String etagBase = TokenHash.sha256Hex(currentVersion).substring(0, 16);
+            Map<String, Snapshot> rebuilt = new HashMap<>();
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<String, Object> shared = loadSharedContent();
+                for (String lang : LANGUAGES) {
+                    rebuilt.put(lang, render(lang, etagBase, shared));
+                }
+            });
+
+            snapshots = Map.copyOf(rebuilt);
+            version = currentVersion;
+            log.info("✅ Homepage snapshots rebuilt in {} ms ({} bytes gzip for 'all')",
+                    System.currentTimeMillis() - start, rebuilt.get("all").gzip().length);
+        } catch (Exception e) {
+            // Продолжаем отдавать предыдущие снимки
+            log.error("❌ Failed to rebuild homepage snapshots: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Всё, кроме новостей, хранит все языки в одной сущности и одинаково для каждого lang
+     */
+    private Map<String, Object> loadSharedContent() {
+        Map<String, Object> about = new LinkedHashMap<>();
+        for (AboutSection section : AboutSection.values()) {
+            about.put(section.name(), aboutRepository.findBySectionOrderByDisplayOrder(section));
+        }
+
+        Map<String, Object> shared = new LinkedHashMap<>();
+        shared.put("services", serviceRepository.findByIsActiveTrueOrderByDisplayOrder());
+        shared.put("contacts", contactRepository.findAllByOrderByDisplayOrder());
+        shared.put("departments", departmentRepository.findAllByOrderByDisplayOrder());
+        shared.put("about", about);
+        return shared;
+    }
+
+    private Snapshot render(String lang, String etagBase, Map<String, Object> shared) {
+        Map<String, Object> bundle = new LinkedHashMap<>();
+        bundle.put("latestNews", newsRepository.findLatestSummaries(lang, PageRequest.of(0, NewsService.LATEST_LIMIT)));
+        bundle.putAll(shared);
+
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(bundle);
+            return new Snapshot("W/\"homepage-" + lang + "-" + etagBase + "\"", json, gzip(json));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        // Сжимается один раз на изменение контента, поэтому максимальный уровень
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
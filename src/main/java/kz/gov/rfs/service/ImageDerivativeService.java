@@ -0,0 +1,358 @@
+package kz.gov.rfs.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фоновая генерация уменьшенных копий изображений (thumb / medium / large) средствами ImageIO.
+ *
+ * Копии перекодируются из пикселей, поэтому EXIF и прочие метаданные в них не попадают;
+ * поворот из EXIF Orientation (фото с телефона) применяется к пикселям до уменьшения.
+ * Пока копия не готова (или не нужна, т.к. оригинал меньше), по её URL отдаётся оригинал — см. UploadServingController.
+ * Если генерация была пропущена (очередь была полна, рестарт), она запускается по первому запросу варианта.
+ * Оригинал читается и копии сохраняются через BlobStore, поэтому работает и с S3.
+ */
+@Slf4j
+@Service
+public class ImageDerivativeService {
+
+    private static final Set<String> SUPPORTED_EXTENSIONS = Set.of(".jpg", ".jpeg", ".png");
+    private static final float JPEG_QUALITY = 0.82f;
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+    private static final int APP1_MARKER = 0xE1;
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+
+    private final BlobStore blobStore;
+    private final boolean enabled;
+    private final long maxPixels;
+    private final ThreadPoolExecutor executor;
+
+    // Оригиналы, поставленные в очередь недавно: промах по варианту не ставит их повторно
+    private final Cache<String, Boolean> submitted = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+
+    public ImageDerivativeService(BlobStore blobStore,
+                                  @Value("${upload.derivatives.enabled:true}") boolean enabled,
+                                  @Value("${upload.derivatives.threads:2}") int threads,
+                                  @Value("${upload.derivatives.queue-capacity:100}") int queueCapacity,
+                                  @Value("${upload.derivatives.max-megapixels:50}") int maxMegapixels) {
+        this.blobStore = blobStore;
+        this.enabled = enabled;
+        this.maxPixels = maxMegapixels * 1_000_000L;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "image-derivatives-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public boolean supports(String fileName) {
+        return enabled && SUPPORTED_EXTENSIONS.contains(extension(fileName));
+    }
+
+    /**
+     * URL всех вариантов; сами файлы появятся позже
+     */
+    public Map<String, String> variantUrls(String url) {
+        Map<String, String> urls = new LinkedHashMap<>();
+        if (supports(url)) {
+            for (ImageVariant variant : ImageVariant.values()) {
+                urls.put(variant.getSuffix(), variant.fileName(url));
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * @param key ключ оригинала в BlobStore
+     */
+    public void submit(String key) {
+        if (!supports(key) || submitted.asMap().putIfAbsent(key, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            executor.execute(() -> generate(key));
+        } catch (RejectedExecutionException e) {
+            // Не критично: пока отдаётся оригинал, а генерация повторится по запросу варианта
+            submitted.invalidate(key);
+            log.warn("⚠️ Image derivative queue is full, deferring {}", key);
+        }
+    }
+
+    /**
+     * Вариант запрошен, но его нет — ставит оригинал в очередь, если он не ставился недавно
+     */
+    public void submitMissing(String originalKey) {
+        submit(originalKey);
+    }
+
+    public void deleteVariants(String key) throws IOException {
+        if (!SUPPORTED_EXTENSIONS.contains(extension(key))) {
+            return;
+        }
+        submitted.invalidate(key);
+        for (ImageVariant variant : ImageVariant.values()) {
+            blobStore.delete(variant.fileName(key));
+        }
+    }
+
+    private void generate(String key) {
+        long start = System.currentTimeMillis();
+        try {
+            BufferedImage source = read(key);
+            if (source == null) {
+                return;
+            }
+
+            boolean jpeg = !extension(key).equals(".png");
+            int created = 0;
+            for (ImageVariant variant : ImageVariant.values()) {
+                if (source.getWidth() <= variant.getMaxWidth()) {
+                    continue;
+                }
+                BufferedImage resized = resize(source, variant.getMaxWidth(), jpeg);
+                write(resized, variant.fileName(key), jpeg);
+                created++;
+            }
+            log.info("✅ Generated {} image variants for {} in {} ms", created, key,
+                    System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("❌ Failed to generate image variants for {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Размеры читаются из заголовка до декодирования (защита от "decompression bomb"),
+     * большие изображения декодируются с прореживанием — в памяти не больше 2x самого крупного варианта.
+     * Результат уже повернут по EXIF Orientation
+     */
+    private BufferedImage read(String key) throws IOException {
+        // Локальный файл читается напрямую, из S3 — потоком
+        Path local = blobStore.localPath(key);
+        try (InputStream stream = local == null ? blobStore.open(key) : null;
+             ImageInputStream input = ImageIO.createImageInputStream(local != null ? local.toFile() : stream)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                log.warn("⚠️ No image reader for {}", key);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, false);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    log.warn("⚠️ Image {} is too large for variants: {}x{}", key, width, height);
+                    return null;
+                }
+
+                int orientation = orientation(reader.getImageMetadata(0));
+                // При повороте на 90° ширина на экране — это высота файла
+                int displayWidth = orientation >= 5 ? height : width;
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, displayWidth / (2 * ImageVariant.LARGE.getMaxWidth()));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return applyOrientation(reader.read(0, param), orientation);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * EXIF Orientation (1..8) из APP1-сегмента JPEG; 1 — поворот не нужен
+     */
+    private static int orientation(IIOMetadata metadata) {
+        if (metadata == null || !JPEG_METADATA_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+            return 1;
+        }
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(JPEG_METADATA_FORMAT);
+        var markers = root.getElementsByTagName("unknown");
+        for (int i = 0; i < markers.getLength(); i++) {
+            IIOMetadataNode marker = (IIOMetadataNode) markers.item(i);
+            if (String.valueOf(APP1_MARKER).equals(marker.getAttribute("MarkerTag"))
+                    && marker.getUserObject() instanceof byte[] data) {
+                int orientation = exifOrientation(data);
+                if (orientation > 1) {
+                    return orientation;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * "Exif\0\0" + TIFF: порядок байт, смещение IFD0, в IFD0 ищем тег 0x0112
+     */
+    static int exifOrientation(byte[] app1) {
+        int tiff = 6;
+        if (app1.length < tiff + 8
+                || !Arrays.equals(app1, 0, tiff, "Exif\0\0".getBytes(StandardCharsets.US_ASCII), 0, tiff)) {
+            return 1;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(app1)
+                .order(app1[tiff] == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        long ifd = tiff + (buffer.getInt(tiff + 4) & 0xFFFFFFFFL);
+        if (ifd + 2 > app1.length) {
+            return 1;
+        }
+        int entries = buffer.getShort((int) ifd) & 0xFFFF;
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > app1.length) {
+                break;
+            }
+            if ((buffer.getShort(entry) & 0xFFFF) == EXIF_ORIENTATION_TAG) {
+                int value = buffer.getShort(entry + 8) & 0xFFFF;
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Поворот/отражение пикселей так, как изображение показывается с учётом EXIF Orientation
+     */
+    static BufferedImage applyOrientation(BufferedImage image, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return image;
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        // x' = m00 * x + m01 * y + m02, y' = m10 * x + m11 * y + m12
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);   // отражение по горизонтали
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);  // 180°
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);   // отражение по вертикали
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);    // транспонирование
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);   // 90° по часовой
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);  // поперечное транспонирование
+            default -> new AffineTransform(0, -1, 1, 0, 0, w);  // 8: 90° против часовой
+        };
+        boolean swap = orientation >= 5;
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage rotated = new BufferedImage(swap ? h : w, swap ? w : h, type);
+        Graphics2D g = rotated.createGraphics();
+        try {
+            g.drawImage(image, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return rotated;
+    }
+
+    /**
+     * Уменьшение вдвое за шаг до целевого размера: заметно качественнее одного билинейного шага
+     */
+    private static BufferedImage resize(BufferedImage source, int targetWidth, boolean opaque) {
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D g = step.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private void write(BufferedImage image, String key, boolean jpeg) throws IOException {
+        // Для локального хранилища — рядом с целевым файлом, чтобы put был простым rename
+        Path local = blobStore.localPath(key);
+        Path temp;
+        if (local != null) {
+            Files.createDirectories(local.getParent());
+            temp = local.resolveSibling(local.getFileName() + ".tmp");
+        } else {
+            temp = Files.createTempFile("image-variant-", extension(key));
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(jpeg ? "jpeg" : "png").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(temp.toFile())) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (jpeg) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        try {
+            blobStore.put(key, temp, jpeg ? "image/jpeg" : "image/png");
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot).toLowerCase(Locale.ROOT);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
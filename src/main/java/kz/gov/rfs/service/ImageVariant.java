@@ -0,0 +1,35 @@
+package kz.gov.rfs.service;
+
+/**
+ * Уменьшенные копии загруженных изображений.
+ * URL варианта: /uploads/{имя}-{suffix}.{расширение}, например /uploads/3f2a...-thumb.jpg
+ */
+public enum ImageVariant {
+    THUMB("thumb", 320),
+    MEDIUM("medium", 800),
+    LARGE("large", 1600);
+
+    private final String suffix;
+    private final int maxWidth;
+
+    ImageVariant(String suffix, int maxWidth) {
+        this.suffix = suffix;
+        this.maxWidth = maxWidth;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+
+    /**
+     * name.jpg -> name-thumb.jpg (работает и для имени файла, и для URL)
+     */
+    public String fileName(String original) {
+        int dot = original.lastIndexOf('.');
+        return original.substring(0, dot) + "-" + suffix + original.substring(dot);
+    }
+}
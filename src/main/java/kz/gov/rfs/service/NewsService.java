@@ -1,65 +1,139 @@
 package kz.gov.rfs.service;
 
+import kz.gov.rfs.config.CacheConfig;
+import kz.gov.rfs.dto.CursorPage;
+import kz.gov.rfs.dto.NewsSearchResult;
+import kz.gov.rfs.dto.NewsSummary;
 import kz.gov.rfs.entity.News;
+import kz.gov.rfs.entity.NewsImage;
 import kz.gov.rfs.entity.NewsType;
 import kz.gov.rfs.repository.NewsRepository;
+import kz.gov.rfs.util.PageCursor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
 public class NewsService {
     private final NewsRepository newsRepository;
 
+    // Слова поискового запроса: только буквы и цифры, остальное — разделители
+    private static final Pattern SEARCH_TERM = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final int MAX_SEARCH_TERMS = 8;
+
+    public static final int LATEST_LIMIT = 5;
+    private static final Set<String> LANGUAGES = Set.of("ru", "kk", "en");
+
+    /**
+     * Язык списка: ru / kk / en — только его колонки, без параметра — все три ("all")
+     *
+     * @throws ResponseStatusException 400 — неизвестный язык
+     */
+    public static String resolveLanguage(String lang) {
+        if (lang == null || lang.isBlank()) {
+            return "all";
+        }
+        String normalized = lang.trim().toLowerCase(Locale.ROOT);
+        if (!LANGUAGES.contains(normalized)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported language: " + lang);
+        }
+        return normalized;
+    }
+
+    @Transactional(readOnly = true)
+    @Cacheable(value = CacheConfig.NEWS, key = "'all:' + #lang + ':' + #pageable.pageNumber + ':' + #pageable.pageSize")
+    public Page<NewsSummary> getAllActiveNews(String lang, Pageable pageable) {
+        return newsRepository.findActiveSummaries(lang, pageable);
+    }
+
     @Transactional(readOnly = true)
-    public Page<News> getAllActiveNews(Pageable pageable) {
-        return newsRepository.findByIsActiveTrueOrderByPublishedDateDesc(pageable);
+    public CursorPage<NewsSummary> getActiveNewsAfter(String lang, String after, int size) {
+        PageCursor cursor = PageCursor.decode(after);
+        int pageSize = PageCursor.clampSize(size);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<NewsSummary> rows = cursor == null
+                ? newsRepository.findActiveSummariesFirst(lang, limit)
+                : newsRepository.findActiveSummariesAfter(lang, cursor.sortValueAsDateTime(), cursor.id(), limit);
+        return CursorPage.of(rows, pageSize, news -> PageCursor.encode(news.getPublishedDate(), news.getId()));
     }
 
     @Transactional(readOnly = true)
-    public Page<News> getAllActiveNewsByType(NewsType newsType, Pageable pageable) {
-        // ИСПРАВЛЕНО: убран лишний параметр true
-        return newsRepository.findByIsActiveTrueAndNewsTypeOrderByPublishedDateDesc(newsType, pageable);
+    @Cacheable(value = CacheConfig.NEWS, key = "'type:' + #newsType + ':' + #lang + ':' + #pageable.pageNumber + ':' + #pageable.pageSize")
+    public Page<NewsSummary> getAllActiveNewsByType(NewsType newsType, String lang, Pageable pageable) {
+        return newsRepository.findActiveSummariesByType(lang, newsType, pageable);
     }
 
     @Transactional(readOnly = true)
+    @Cacheable(value = CacheConfig.NEWS, key = "#id")
     public News getNewsById(Long id) {
-        News news = newsRepository.findById(id)
+        return newsRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("News not found with id: " + id));
-
-        // Увеличиваем счётчик просмотров
-        news.incrementViewCount();
-        newsRepository.save(news);
-
-        return news;
     }
 
     @Transactional(readOnly = true)
-    public List<News> getLatestNews() {
-        return newsRepository.findTop5ByIsActiveTrueOrderByPublishedDateDesc();
+    @Cacheable(value = CacheConfig.NEWS, key = "'latest:' + #lang")
+    public List<NewsSummary> getLatestNews(String lang) {
+        return newsRepository.findLatestSummaries(lang, PageRequest.of(0, LATEST_LIMIT));
     }
 
     @Transactional(readOnly = true)
-    public List<News> getLatestNewsByType(NewsType newsType) {
-        return newsRepository.findTop5ByIsActiveTrueAndNewsTypeOrderByPublishedDateDesc(newsType);
+    @Cacheable(value = CacheConfig.NEWS, key = "'latest:' + #newsType + ':' + #lang")
+    public List<NewsSummary> getLatestNewsByType(NewsType newsType, String lang) {
+        return newsRepository.findLatestSummariesByType(lang, newsType, PageRequest.of(0, LATEST_LIMIT));
     }
 
     @Transactional(readOnly = true)
-    public Page<News> searchNews(String keyword, Pageable pageable) {
-        return newsRepository.searchNews(keyword, pageable);
+    public Page<NewsSearchResult> searchNews(String keyword, String lang, Pageable pageable) {
+        String query = toPrefixTsQuery(keyword);
+        if (query.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
+        return newsRepository.searchNews(query, lang, pageable);
     }
 
     @Transactional(readOnly = true)
-    public Page<News> searchNewsByType(String keyword, NewsType newsType, Pageable pageable) {
-        return newsRepository.searchNewsByType(keyword, newsType, pageable);
+    public Page<NewsSearchResult> searchNewsByType(String keyword, NewsType newsType, String lang, Pageable pageable) {
+        String query = toPrefixTsQuery(keyword);
+        if (query.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
+        return newsRepository.searchNewsByType(query, newsType.name(), lang, pageable);
+    }
+
+    /**
+     * "налог кодекс" -> "налог:* & кодекс:*" — все слова обязательны, последнее может быть недописанным.
+     * Спецсимволы tsquery в результат не попадают.
+     */
+    static String toPrefixTsQuery(String keyword) {
+        if (keyword == null) {
+            return "";
+        }
+        Matcher matcher = SEARCH_TERM.matcher(keyword);
+        List<String> terms = new ArrayList<>();
+        while (matcher.find() && terms.size() < MAX_SEARCH_TERMS) {
+            terms.add(matcher.group() + ":*");
+        }
+        return String.join(" & ", terms);
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.NEWS, allEntries = true)
     public News createNews(News news) {
         if (news.getPublishedDate() == null) {
             news.setPublishedDate(LocalDateTime.now());
@@ -75,6 +149,7 @@ public class NewsService {
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.NEWS, allEntries = true)
     public News updateNews(Long id, News newsDetails) {
         News news = newsRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("News not found with id: " + id));
@@ -99,6 +174,7 @@ public class NewsService {
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.NEWS, allEntries = true)
     public void deleteNews(Long id) {
         News news = newsRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("News not found with id: " + id));
@@ -106,6 +182,34 @@ public class NewsService {
         newsRepository.save(news);
     }
 
+    @Transactional(readOnly = true)
+    public boolean newsExists(Long id) {
+        return newsRepository.existsById(id);
+    }
+
+    /**
+     * Добавляет изображения в конец галереи новости одной транзакцией
+     */
+    @Transactional
+    @CacheEvict(value = CacheConfig.NEWS, allEntries = true)
+    public List<NewsImage> addGalleryImages(Long newsId, List<String> imageUrls) {
+        News news = newsRepository.findById(newsId)
+                .orElseThrow(() -> new RuntimeException("News not found with id: " + newsId));
+
+        List<NewsImage> added = new ArrayList<>();
+        for (String imageUrl : imageUrls) {
+            NewsImage image = new NewsImage();
+            image.setImageUrl(imageUrl);
+            image.setNews(news);
+            news.getAdditionalImages().add(image);
+            added.add(image);
+        }
+        // Колонки news не меняются — сдвигаем updated_at явно, чтобы сменилась версия для ETag
+        news.setUpdatedAt(LocalDateTime.now());
+        newsRepository.save(news);
+        return added;
+    }
+
     @Transactional(readOnly = true)
     public Long getNewsCount() {
         return newsRepository.countByIsActive(true);
@@ -0,0 +1,82 @@
+package kz.gov.rfs.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчик просмотров новостей с отложенной записью.
+ * Просмотры копятся в памяти и периодически сбрасываются в БД одним batch UPDATE.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NewsViewCounter {
+
+    private static final String FLUSH_SQL = "UPDATE news SET view_count = view_count + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    public void recordView(Long newsId) {
+        counters.computeIfAbsent(newsId, id -> new Counter()).hits.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${news.views.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        List<Object[]> batch = new ArrayList<>();
+        List<Counter> flushed = new ArrayList<>();
+        List<Long> totals = new ArrayList<>();
+
+        counters.forEach((newsId, counter) -> {
+            long total = counter.hits.sum();
+            long delta = total - counter.flushed;
+            if (delta > 0) {
+                batch.add(new Object[]{delta, newsId});
+                flushed.add(counter);
+                totals.add(total);
+            }
+        });
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(FLUSH_SQL, batch));
+        } catch (Exception e) {
+            // Дельты не списаны — будут повторены при следующем сбросе
+            log.error("❌ Failed to flush view counts for {} news", batch.size(), e);
+            return;
+        }
+
+        for (int i = 0; i < flushed.size(); i++) {
+            flushed.get(i).flushed = totals.get(i);
+        }
+        log.debug("Flushed view counts for {} news", batch.size());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing pending news view counts before shutdown");
+        flush();
+    }
+
+    private static final class Counter {
+        private final LongAdder hits = new LongAdder();
+        // Изменяется только под монитором flush()
+        private long flushed;
+    }
+}
@@ -1,10 +1,16 @@
 package kz.gov.rfs.service;
 
+import kz.gov.rfs.config.CacheConfig;
+import kz.gov.rfs.dto.CursorPage;
 import kz.gov.rfs.entity.Procurement;
 import kz.gov.rfs.entity.ProcurementType;
 import kz.gov.rfs.repository.ProcurementRepository;
+import kz.gov.rfs.util.PageCursor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,34 +21,56 @@ import java.util.List;
 public class ProcurementService {
     private final ProcurementRepository procurementRepository;
 
+    @Cacheable(value = CacheConfig.PROCUREMENTS, key = "'all:' + #pageable.pageNumber + ':' + #pageable.pageSize")
     public Page<Procurement> getAllActiveProcurements(Pageable pageable) {
         return procurementRepository.findByIsActiveTrueOrderByPublishDateDesc(pageable);
     }
 
+    public CursorPage<Procurement> getActiveProcurementsAfter(String after, int size) {
+        PageCursor cursor = PageCursor.decode(after);
+        int pageSize = PageCursor.clampSize(size);
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<Procurement> rows;
+        if (cursor == null) {
+            rows = procurementRepository.findActiveFirst(limit);
+        } else if (cursor.sortValueAsDate() == null) {
+            rows = procurementRepository.findActiveAfterUndated(cursor.id(), limit);
+        } else {
+            rows = procurementRepository.findActiveAfter(cursor.sortValueAsDate(), cursor.id(), limit);
+        }
+        return CursorPage.of(rows, pageSize, p -> PageCursor.encode(p.getPublishDate(), p.getId()));
+    }
+
+    @Cacheable(value = CacheConfig.PROCUREMENTS, key = "'year:' + #year")
     public List<Procurement> getProcurementsByYear(Integer year) {
         return procurementRepository.findByYearAndIsActiveTrueOrderByPublishDateDesc(year);
     }
 
+    @Cacheable(value = CacheConfig.PROCUREMENTS, key = "'type:' + #type")
     public List<Procurement> getProcurementsByType(ProcurementType type) {
         return procurementRepository.findByProcurementTypeAndIsActiveTrueOrderByPublishDateDesc(type);
     }
 
+    @Cacheable(value = CacheConfig.PROCUREMENTS, key = "'year:' + #year + ':type:' + #type")
     public List<Procurement> getProcurementsByYearAndType(Integer year, ProcurementType type) {
         return procurementRepository.findByYearAndProcurementTypeAndIsActiveTrue(year, type);
     }
 
+    @Cacheable(value = CacheConfig.PROCUREMENTS, key = "#id")
     public Procurement getProcurementById(Long id) {
         return procurementRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Procurement not found with id: " + id));
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.PROCUREMENTS, allEntries = true)
     public Procurement createProcurement(Procurement procurement) {
         procurement.setIsActive(true);
         return procurementRepository.save(procurement);
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.PROCUREMENTS, allEntries = true)
     public Procurement updateProcurement(Long id, Procurement procurementDetails) {
         Procurement procurement = getProcurementById(id);
         procurement.setTitleRu(procurementDetails.getTitleRu());
@@ -60,6 +88,7 @@ public class ProcurementService {
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.PROCUREMENTS, allEntries = true)
     public void deleteProcurement(Long id) {
         Procurement procurement = getProcurementById(id);
         procurement.setIsActive(false);
@@ -0,0 +1,529 @@
+package kz.gov.rfs.service;
+
+import jakarta.annotation.PostConstruct;
+import kz.gov.rfs.util.FileSignature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Возобновляемая загрузка больших файлов частями (init / append / complete, по мотивам tus).
+ *
+ * Части пишутся в файл сессии позиционной записью FileChannel по смещению, которое передал клиент;
+ * смещение сдвигается только после fsync и проверки SHA-256 части. SHA-256 всего файла считается
+ * по мере поступления частей, поэтому complete не перечитывает файл.
+ * Обрыв соединения теряет не больше одной части: клиент узнаёт подтверждённое смещение и продолжает с него.
+ * Состояние сессии лежит рядом с данными (id.properties) и переживает рестарт;
+ * сессии без активности дольше upload.resumable.expire-hours удаляются.
+ *
+ * Смещение, дайджест и блокировка сессии живут в памяти ноды, создавшей сессию, поэтому при нескольких
+ * нодах поддерживается только sticky-routing: все запросы сессии должны приходить на одну ноду.
+ * Общий upload.resumable.dir между нодами не поддерживается — две ноды будут писать в один файл без
+ * общей блокировки. Лимиты сессий и проверка места тоже считаются на ноду.
+ * Число активных сессий ограничено (на пользователя и всего),
+ * новая сессия создаётся, только если на диске хватает места на неё и на недокачанные части остальных.
+ */
+@Slf4j
+@Service
+public class ResumableUploadService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String DATA_SUFFIX = ".part";
+    private static final String META_SUFFIX = ".properties";
+    private static final Pattern SESSION_ID = Pattern.compile("^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$");
+
+    private final UploadStorageService uploadStorageService;
+    private final String sessionDirectory;
+    private final long maxFileSize;
+    private final long maxChunkSize;
+    private final Duration expireAfter;
+    private final int maxSessionsPerOwner;
+    private final int maxSessions;
+    private final long minFreeSpace;
+
+    // Состояние сессий этой ноды (см. sticky-routing в описании класса)
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // Подсчёт активных сессий и создание новой — атомарно
+    private final Object createLock = new Object();
+    private Path sessionPath;
+
+    /**
+     * @param offset сколько байт уже принято и подтверждено
+     */
+    public record SessionState(String id, long size, long offset, Instant expiresAt) {
+    }
+
+    /**
+     * @param reserved сколько байт ещё допишут активные сессии
+     */
+    private record Usage(int sessions, int ownedSessions, long reserved) {
+    }
+
+    public ResumableUploadService(UploadStorageService uploadStorageService,
+                                  @Value("${upload.resumable.dir:${file.upload-dir:uploads}/.resumable}") String sessionDirectory,
+                                  @Value("${upload.resumable.max-file-size-mb:250}") long maxFileSizeMb,
+                                  @Value("${upload.resumable.max-chunk-size-mb:16}") long maxChunkSizeMb,
+                                  @Value("${upload.resumable.expire-hours:24}") long expireHours,
+                                  @Value("${upload.resumable.max-sessions-per-owner:5}") int maxSessionsPerOwner,
+                                  @Value("${upload.resumable.max-sessions:100}") int maxSessions,
+                                  @Value("${upload.resumable.min-free-space-mb:1024}") long minFreeSpaceMb) {
+        this.uploadStorageService = uploadStorageService;
+        this.sessionDirectory = sessionDirectory;
+        this.maxFileSize = maxFileSizeMb * 1024 * 1024;
+        this.maxChunkSize = maxChunkSizeMb * 1024 * 1024;
+        this.expireAfter = Duration.ofHours(expireHours);
+        this.maxSessionsPerOwner = maxSessionsPerOwner;
+        this.maxSessions = maxSessions;
+        this.minFreeSpace = minFreeSpaceMb * 1024 * 1024;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        sessionPath = Paths.get(sessionDirectory).toAbsolutePath().normalize();
+        Files.createDirectories(sessionPath);
+    }
+
+    /**
+     * @param extension уже проверенное расширение (с точкой)
+     */
+    public SessionState create(String owner, String extension, long size) throws IOException {
+        if (size <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File size must be positive");
+        }
+        if (size > maxFileSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "File size exceeds " + maxFileSize / (1024 * 1024) + "MB limit");
+        }
+
+        Session session;
+        synchronized (createLock) {
+            Usage usage = usage(owner);
+            if (usage.ownedSessions() >= maxSessionsPerOwner) {
+                log.warn("⚠️ User {} already has {} active resumable uploads", owner, usage.ownedSessions());
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                        "Too many active uploads, maximum is " + maxSessionsPerOwner);
+            }
+            if (usage.sessions() >= maxSessions) {
+                log.warn("⚠️ Resumable upload limit reached: {} active sessions", usage.sessions());
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many active uploads, try again later");
+            }
+            long usable = Files.getFileStore(sessionPath).getUsableSpace();
+            if (usable < size + usage.reserved() + minFreeSpace) {
+                log.error("❌ Not enough disk space for resumable upload of {} bytes: {} usable, {} reserved",
+                        size, usable, usage.reserved());
+                throw new ResponseStatusException(HttpStatus.INSUFFICIENT_STORAGE, "Not enough storage space");
+            }
+
+            Instant now = Instant.now();
+            session = new Session(UUID.randomUUID().toString(), owner, extension.toLowerCase(Locale.ROOT),
+                    size, now, 0, now, sha256());
+            Files.createFile(dataFile(session.id));
+            saveMeta(session);
+            sessions.put(session.id, session);
+        }
+
+        log.info("📤 Resumable upload {} started by {}: {} bytes ({})", session.id, owner, size, session.extension);
+        return session.state(expireAfter);
+    }
+
+    public SessionState get(String id, String owner) throws IOException {
+        Session session = session(id, owner);
+        return session.state(expireAfter);
+    }
+
+    /**
+     * Записывает часть по смещению offset. Смещение должно совпадать с подтверждённым:
+     * повтор уже принятой части или пропуск — 409, клиент берёт актуальное смещение из get()
+     *
+     * @param expectedSha256 SHA-256 части (hex); null — без проверки
+     */
+    public SessionState append(String id, String owner, long offset, InputStream chunk, String expectedSha256)
+            throws IOException {
+        Session session = session(id, owner);
+        if (!session.lock.tryLock()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Another chunk of this upload is in progress");
+        }
+        try {
+            checkOpen(session);
+            if (offset != session.offset) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Upload offset mismatch: expected " + session.offset);
+            }
+
+            // Общий хэш обновляется на копии: если часть не дойдёт или не совпадёт, состояние не меняется
+            MessageDigest rolling = copy(session.digest);
+            MessageDigest chunkDigest = sha256();
+            long written = 0;
+            try (FileChannel channel = FileChannel.open(dataFile(id), StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+                int read;
+                while ((read = chunk.read(buffer)) != -1) {
+                    if (written + read > maxChunkSize) {
+                        throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                                "Chunk exceeds " + maxChunkSize / (1024 * 1024) + "MB limit");
+                    }
+                    if (offset + written + read > session.size) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk exceeds declared file size");
+                    }
+                    rolling.update(buffer, 0, read);
+                    chunkDigest.update(buffer, 0, read);
+
+                    byteBuffer.clear().limit(read);
+                    long position = offset + written;
+                    while (byteBuffer.hasRemaining()) {
+                        position += channel.write(byteBuffer, position);
+                    }
+                    written += read;
+                }
+                // Смещение подтверждается только для данных, которые уже на диске
+                channel.force(false);
+            }
+
+            if (written == 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk is empty");
+            }
+            if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(HexFormat.of().formatHex(chunkDigest.digest()))) {
+                log.warn("⚠️ Chunk checksum mismatch in upload {} at offset {}", id, offset);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk checksum mismatch");
+            }
+
+            session.digest = rolling;
+            session.offset += written;
+            session.updatedAt = Instant.now();
+            saveMeta(session);
+
+            // Тип проверяется, как только пришёл заголовок: не принимаем 200MB, чтобы отклонить их в конце
+            boolean headerComplete = session.offset >= Math.min(FileSignature.HEADER_LENGTH, session.size);
+            if (offset < FileSignature.HEADER_LENGTH && headerComplete && detectContentType(session) == null) {
+                discard(session);
+                log.error("🚨 SECURITY: File content does not match extension {}", session.extension);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File content does not match its extension");
+            }
+            return session.state(expireAfter);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Все части приняты: проверка SHA-256 файла и передача в хранилище загрузок
+     *
+     * @param expectedSha256 SHA-256 всего файла (hex); null — без проверки
+     */
+    public UploadStorageService.StoredFile complete(String id, String owner, String expectedSha256) throws IOException {
+        Session session = session(id, owner);
+        if (!session.lock.tryLock()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Another chunk of this upload is in progress");
+        }
+        try {
+            checkOpen(session);
+            if (session.offset != session.size) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Upload is incomplete: " + session.offset + " of " + session.size + " bytes received");
+            }
+
+            String sha256 = HexFormat.of().formatHex(copy(session.digest).digest());
+            if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+                discard(session);
+                log.error("❌ Checksum mismatch for upload {}", id);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File checksum mismatch");
+            }
+            String contentType = detectContentType(session);
+            if (contentType == null) {
+                discard(session);
+                log.error("🚨 SECURITY: File content does not match extension {}", session.extension);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File content does not match its extension");
+            }
+
+            Path data = dataFile(id);
+            // Хвост оборванной записи за подтверждённым смещением
+            try (FileChannel channel = FileChannel.open(data, StandardOpenOption.WRITE)) {
+                channel.truncate(session.size);
+            }
+            UploadStorageService.StoredFile stored =
+                    uploadStorageService.storeFile(data, session.extension, sha256, session.size, contentType);
+            discard(session);
+            log.info("✅ Resumable upload {} completed: {}", id, stored.key());
+            return stored;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public void abort(String id, String owner) throws IOException {
+        Session session = session(id, owner);
+        session.lock.lock();
+        try {
+            discard(session);
+        } finally {
+            session.lock.unlock();
+        }
+        log.info("🗑️ Resumable upload {} aborted", id);
+    }
+
+    /**
+     * Брошенные сессии: клиент не присылал части дольше expire-hours.
+     * Данные и состояние перезаписываются с каждой частью, поэтому возраст файла — время последней активности
+     */
+    @Scheduled(fixedDelayString = "${upload.resumable.cleanup-interval-ms:3600000}")
+    public void cleanup() {
+        Instant cutoff = Instant.now().minus(expireAfter);
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(sessionPath)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String id = fileName.contains(".") ? fileName.substring(0, fileName.indexOf('.')) : fileName;
+                try {
+                    Session session = sessions.get(id);
+                    if (session == null) {
+                        if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && Files.deleteIfExists(file)
+                                && fileName.endsWith(DATA_SUFFIX)) {
+                            deleted++;
+                        }
+                    } else if (session.updatedAt.isBefore(cutoff) && session.lock.tryLock()) {
+                        try {
+                            discard(session);
+                            deleted++;
+                        } finally {
+                            session.lock.unlock();
+                        }
+                    }
+                } catch (Exception e) {
+                    log.warn("Failed to clean up resumable upload {}: {}", id, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.error("❌ Error during resumable upload cleanup", e);
+            return;
+        }
+        if (deleted > 0) {
+            log.info("🧹 Removed {} abandoned resumable uploads", deleted);
+        }
+    }
+
+    /**
+     * Активные сессии по файлам состояния — в том числе ещё не загруженные в память после рестарта
+     */
+    private Usage usage(String owner) throws IOException {
+        Instant cutoff = Instant.now().minus(expireAfter);
+        int total = 0;
+        int owned = 0;
+        long reserved = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(sessionPath, "*" + META_SUFFIX)) {
+            for (Path file : files) {
+                Properties properties;
+                try {
+                    properties = loadProperties(file);
+                    if (Instant.parse(properties.getProperty("updated-at")).isBefore(cutoff)) {
+                        continue;
+                    }
+                    reserved += Long.parseLong(properties.getProperty("size"))
+                            - Long.parseLong(properties.getProperty("offset"));
+                } catch (NoSuchFileException e) {
+                    // Сессию только что завершили или отменили
+                    continue;
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Failed to read resumable upload state {}: {}", file.getFileName(), e.getMessage());
+                    continue;
+                }
+                total++;
+                if (owner.equals(properties.getProperty("owner"))) {
+                    owned++;
+                }
+            }
+        }
+        return new Usage(total, owned, reserved);
+    }
+
+    private Session session(String id, String owner) throws IOException {
+        if (id == null || !SESSION_ID.matcher(id).matches()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found");
+        }
+        Session session = sessions.get(id);
+        if (session == null) {
+            // После рестарта: состояние — с диска, хэш пересчитывается по уже принятым данным
+            try {
+                session = sessions.computeIfAbsent(id, key -> {
+                    try {
+                        return readMeta(key);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                if (e.getCause() instanceof NoSuchFileException) {
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found");
+                }
+                throw e.getCause();
+            }
+        }
+        if (!session.owner.equals(owner)) {
+            log.error("🚨 SECURITY: User {} tried to access upload {} of {}", owner, id, session.owner);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found");
+        }
+        return session;
+    }
+
+    private static void checkOpen(Session session) {
+        if (session.closed) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found");
+        }
+    }
+
+    private void discard(Session session) throws IOException {
+        session.closed = true;
+        sessions.remove(session.id);
+        Files.deleteIfExists(dataFile(session.id));
+        Files.deleteIfExists(metaFile(session.id));
+    }
+
+    private String detectContentType(Session session) throws IOException {
+        int length = (int) Math.min(FileSignature.HEADER_LENGTH, session.offset);
+        byte[] header = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        try (FileChannel channel = FileChannel.open(dataFile(session.id), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    break;
+                }
+            }
+        }
+        return FileSignature.detect(header, buffer.position(), session.extension);
+    }
+
+    private void saveMeta(Session session) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("owner", session.owner);
+        properties.setProperty("extension", session.extension);
+        properties.setProperty("size", String.valueOf(session.size));
+        properties.setProperty("offset", String.valueOf(session.offset));
+        properties.setProperty("created-at", session.createdAt.toString());
+        properties.setProperty("updated-at", session.updatedAt.toString());
+
+        Path meta = metaFile(session.id);
+        Path temp = meta.resolveSibling(meta.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, null);
+        }
+        Files.move(temp, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Session readMeta(String id) throws IOException {
+        Properties properties = loadProperties(metaFile(id));
+        long offset = Long.parseLong(properties.getProperty("offset"));
+
+        MessageDigest digest = sha256();
+        try (InputStream data = Files.newInputStream(dataFile(id))) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = offset;
+            int read;
+            while (remaining > 0 && (read = data.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                digest.update(buffer, 0, read);
+                remaining -= read;
+            }
+            if (remaining > 0) {
+                throw new IOException("Upload data is shorter than confirmed offset: " + id);
+            }
+        }
+
+        return new Session(id, properties.getProperty("owner"), properties.getProperty("extension"),
+                Long.parseLong(properties.getProperty("size")), Instant.parse(properties.getProperty("created-at")),
+                offset, Instant.parse(properties.getProperty("updated-at")), digest);
+    }
+
+    private static Properties loadProperties(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    private Path dataFile(String id) {
+        return sessionPath.resolve(id + DATA_SUFFIX);
+    }
+
+    private Path metaFile(String id) {
+        return sessionPath.resolve(id + META_SUFFIX);
+    }
+
+    private static MessageDigest copy(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("SHA-256 digest cannot be cloned", e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Изменяемые поля — под lock
+     */
+    private static final class Session {
+        private final String id;
+        private final String owner;
+        private final String extension;
+        private final long size;
+        private final Instant createdAt;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private long offset;
+        private Instant updatedAt;
+        private MessageDigest digest;
+        private boolean closed;
+
+        private Session(String id, String owner, String extension, long size, Instant createdAt,
+                        long offset, Instant updatedAt, MessageDigest digest) {
+            this.id = id;
+            this.owner = owner;
+            this.extension = extension;
+            this.size = size;
+            this.createdAt = createdAt;
+            this.offset = offset;
+            this.updatedAt = updatedAt;
+            this.digest = digest;
+        }
+
+        private SessionState state(Duration expireAfter) {
+            return new SessionState(id, size, offset, updatedAt.plus(expireAfter));
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package kz.gov.rfs.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Файлы в бакете S3-совместимого хранилища (AWS S3, MinIO и т.п.). Общий для всех нод, NFS не нужен.
+ *
+ * Запросы подписываются AWS Signature V4 и идут через java.net.http без SDK.
+ * Файлы больше upload.s3.part-size-mb загружаются multipart-ом: части читаются с диска потоком,
+ * целиком в памяти файл не держится. Клиенты получают файлы по presigned URL напрямую из хранилища.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "upload.store", havingValue = "s3")
+public class S3BlobStore implements BlobStore {
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String SERVICE = "s3";
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final String EMPTY_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+    private static final DateTimeFormatter AMZ_DATE =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter AMZ_DAY = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+    private static final Pattern ERROR_CODE = Pattern.compile("<Code>([^<]+)</Code>");
+
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final long MAX_PRESIGN_SECONDS = 7 * 24 * 3600;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String bucket;
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+    private final boolean pathStyle;
+    private final URI endpoint;
+    private final URI publicEndpoint;
+    private final long partSize;
+    private final long presignSeconds;
+    private final Duration requestTimeout;
+    private final HttpClient httpClient;
+
+    public S3BlobStore(@Value("${upload.s3.endpoint:}") String endpoint,
+                       @Value("${upload.s3.public-endpoint:}") String publicEndpoint,
+                       @Value("${upload.s3.region:us-east-1}") String region,
+                       @Value("${upload.s3.bucket:}") String bucket,
+                       @Value("${upload.s3.access-key:}") String accessKey,
+                       @Value("${upload.s3.secret-key:}") String secretKey,
+                       @Value("${upload.s3.path-style:true}") boolean pathStyle,
+                       @Value("${upload.s3.part-size-mb:8}") int partSizeMb,
+                       @Value("${upload.s3.presign-ttl-minutes:60}") int presignTtlMinutes,
+                       @Value("${upload.s3.request-timeout-seconds:60}") int requestTimeoutSeconds) {
+        if (endpoint.isBlank() || bucket.isBlank() || accessKey.isBlank() || secretKey.isBlank()) {
+            throw new IllegalStateException("upload.store=s3 requires upload.s3.endpoint, bucket, access-key and secret-key");
+        }
+        this.partSize = partSizeMb * 1024L * 1024;
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalStateException("upload.s3.part-size-mb must be at least 5 (S3 minimum part size)");
+        }
+        this.presignSeconds = presignTtlMinutes * 60L;
+        if (presignSeconds < 120 || presignSeconds > MAX_PRESIGN_SECONDS) {
+            throw new IllegalStateException("upload.s3.presign-ttl-minutes must be between 2 minutes and 7 days");
+        }
+
+        this.endpoint = URI.create(stripTrailingSlash(endpoint));
+        this.publicEndpoint = publicEndpoint.isBlank() ? this.endpoint : URI.create(stripTrailingSlash(publicEndpoint));
+        this.region = region;
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.pathStyle = pathStyle;
+        this.requestTimeout = Duration.ofSeconds(requestTimeoutSeconds);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        log.info("✅ Uploads are stored in S3 bucket '{}' at {}", bucket, this.endpoint);
+    }
+
+    @Override
+    public boolean put(String key, Path source, String contentType) throws IOException {
+        // Одинаковое содержимое — тот же ключ: повторно не загружаем
+        if (exists(key)) {
+            return false;
+        }
+        long size = Files.size(source);
+        if (size <= partSize) {
+            HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofFile(source);
+            HttpResponse<String> response = send("PUT", key, Map.of(), sha256(source, 0, size), body,
+                    contentTypeHeader(contentType));
+            expect(response, 200, "PUT " + key);
+        } else {
+            multipartUpload(key, source, size, contentType);
+        }
+        return true;
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        HttpResponse<InputStream> response = send("GET", key, Map.of(), EMPTY_SHA256,
+                HttpRequest.BodyPublishers.noBody(), Map.of(), HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() == 200) {
+            return response.body();
+        }
+        String error;
+        try (InputStream body = response.body()) {
+            error = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if (response.statusCode() == 404) {
+            throw new NoSuchFileException(key);
+        }
+        throw failure("GET " + key, response.statusCode(), error);
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        HttpResponse<String> response = send("HEAD", key, Map.of(), EMPTY_SHA256,
+                HttpRequest.BodyPublishers.noBody(), Map.of());
+        if (response.statusCode() == 404) {
+            return false;
+        }
+        expect(response, 200, "HEAD " + key);
+        return true;
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        // DELETE отвечает 204 и для отсутствующего объекта
+        if (!exists(key)) {
+            return false;
+        }
+        HttpResponse<String> response = send("DELETE", key, Map.of(), EMPTY_SHA256,
+                HttpRequest.BodyPublishers.noBody(), Map.of());
+        expect(response, 204, "DELETE " + key);
+        return true;
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return null;
+    }
+
+    /**
+     * Время подписи округляется вниз до половины TTL: в пределах окна URL одинаковый,
+     * и браузер берёт файл из своего кеша, а не скачивает заново по новой подписи
+     */
+    @Override
+    public DirectLink directLink(String key, String cacheControl) {
+        long window = presignSeconds / 2;
+        long now = Instant.now().getEpochSecond();
+        Instant signedAt = Instant.ofEpochSecond(now - now % window);
+
+        String scope = AMZ_DAY.format(signedAt) + "/" + region + "/" + SERVICE + "/aws4_request";
+        Map<String, String> query = new TreeMap<>();
+        query.put("X-Amz-Algorithm", ALGORITHM);
+        query.put("X-Amz-Credential", accessKey + "/" + scope);
+        query.put("X-Amz-Date", AMZ_DATE.format(signedAt));
+        query.put("X-Amz-Expires", String.valueOf(presignSeconds));
+        query.put("X-Amz-SignedHeaders", "host");
+        if (cacheControl != null) {
+            query.put("response-cache-control", cacheControl);
+        }
+
+        URI base = objectUri(publicEndpoint, key);
+        String canonicalQuery = canonicalQuery(query);
+        String canonicalRequest = "GET\n" + base.getRawPath() + "\n" + canonicalQuery + "\n"
+                + "host:" + hostHeader(base) + "\n\nhost\n" + UNSIGNED_PAYLOAD;
+        String signature = sign(signedAt, scope, canonicalRequest);
+
+        URI uri = URI.create(base + "?" + canonicalQuery + "&X-Amz-Signature=" + signature);
+        return new DirectLink(uri, Duration.ofSeconds(window - now % window));
+    }
+
+    private void multipartUpload(String key, Path source, long size, String contentType) throws IOException {
+        HttpResponse<String> created = send("POST", key, Map.of("uploads", ""), EMPTY_SHA256,
+                HttpRequest.BodyPublishers.noBody(), contentTypeHeader(contentType));
+        expect(created, 200, "CreateMultipartUpload " + key);
+        Matcher uploadIdMatcher = UPLOAD_ID.matcher(created.body());
+        if (!uploadIdMatcher.find()) {
+            throw new IOException("S3 CreateMultipartUpload returned no UploadId for " + key);
+        }
+        String uploadId = uploadIdMatcher.group(1);
+
+        try {
+            List<String> etags = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += partSize) {
+                long length = Math.min(partSize, size - offset);
+                long partOffset = offset;
+                HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.fromPublisher(
+                        HttpRequest.BodyPublishers.ofInputStream(() -> openRange(source, partOffset, length)), length);
+                String partNumber = String.valueOf(etags.size() + 1);
+
+                HttpResponse<String> response = send("PUT", key, Map.of("partNumber", partNumber, "uploadId", uploadId),
+                        sha256(source, offset, length), body, Map.of());
+                expect(response, 200, "UploadPart " + partNumber + " of " + key);
+                etags.add(response.headers().firstValue("ETag")
+                        .orElseThrow(() -> new IOException("S3 UploadPart returned no ETag for " + key)));
+            }
+
+            StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+            for (int i = 0; i < etags.size(); i++) {
+                xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                        .append(etags.get(i)).append("</ETag></Part>");
+            }
+            byte[] completeBody = xml.append("</CompleteMultipartUpload>").toString().getBytes(StandardCharsets.UTF_8);
+            HttpResponse<String> completed = send("POST", key, Map.of("uploadId", uploadId), sha256(completeBody),
+                    HttpRequest.BodyPublishers.ofByteArray(completeBody), Map.of("Content-Type", "application/xml"));
+            // Ошибка сборки может прийти и с кодом 200 — в теле <Error>
+            if (completed.statusCode() != 200 || completed.body().contains("<Error>")) {
+                throw failure("CompleteMultipartUpload " + key, completed.statusCode(), completed.body());
+            }
+            log.info("✅ Uploaded {} to S3 in {} parts", key, etags.size());
+        } catch (IOException | RuntimeException e) {
+            abortMultipartUpload(key, uploadId);
+            throw e;
+        }
+    }
+
+    private void abortMultipartUpload(String key, String uploadId) {
+        try {
+            send("DELETE", key, Map.of("uploadId", uploadId), EMPTY_SHA256, HttpRequest.BodyPublishers.noBody(), Map.of());
+        } catch (IOException e) {
+            // Незавершённые части удалит lifecycle-правило бакета (AbortIncompleteMultipartUpload)
+            log.warn("⚠️ Failed to abort multipart upload of {}: {}", key, e.getMessage());
+        }
+    }
+
+    private HttpResponse<String> send(String method, String key, Map<String, String> query, String payloadHash,
+                                      HttpRequest.BodyPublisher body, Map<String, String> headers) throws IOException {
+        return send(method, key, query, payloadHash, body, headers, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private <T> HttpResponse<T> send(String method, String key, Map<String, String> query, String payloadHash,
+                                     HttpRequest.BodyPublisher body, Map<String, String> headers,
+                                     HttpResponse.BodyHandler<T> handler) throws IOException {
+        Instant now = Instant.now();
+        String amzDate = AMZ_DATE.format(now);
+        String scope = AMZ_DAY.format(now) + "/" + region + "/" + SERVICE + "/aws4_request";
+
+        URI base = objectUri(endpoint, key);
+        String canonicalQuery = canonicalQuery(new TreeMap<>(query));
+        String signedHeaders = "host;x-amz-content-sha256;x-amz-date";
+        String canonicalRequest = method + "\n" + base.getRawPath() + "\n" + canonicalQuery + "\n"
+                + "host:" + hostHeader(base) + "\n"
+                + "x-amz-content-sha256:" + payloadHash + "\n"
+                + "x-amz-date:" + amzDate + "\n\n"
+                + signedHeaders + "\n" + payloadHash;
+        String authorization = ALGORITHM + " Credential=" + accessKey + "/" + scope
+                + ", SignedHeaders=" + signedHeaders + ", Signature=" + sign(now, scope, canonicalRequest);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(canonicalQuery.isEmpty() ? base : URI.create(base + "?" + canonicalQuery))
+                .method(method, body)
+                .timeout(requestTimeout)
+                .header("x-amz-date", amzDate)
+                .header("x-amz-content-sha256", payloadHash)
+                .header("Authorization", authorization);
+        headers.forEach(request::header);
+
+        try {
+            return httpClient.send(request.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("S3 request interrupted: " + method + " " + key);
+        }
+    }
+
+    private String sign(Instant time, String scope, String canonicalRequest) {
+        String stringToSign = ALGORITHM + "\n" + AMZ_DATE.format(time) + "\n" + scope + "\n"
+                + sha256(canonicalRequest.getBytes(StandardCharsets.UTF_8));
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), AMZ_DAY.format(time));
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, SERVICE);
+        signingKey = hmac(signingKey, "aws4_request");
+        return HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+    }
+
+    /**
+     * path-style: endpoint/bucket/key (MinIO); иначе bucket.host/key
+     */
+    private URI objectUri(URI base, String key) {
+        String authority = base.getRawAuthority();
+        String prefix = pathStyle
+                ? base.getScheme() + "://" + authority + "/" + encode(bucket, false)
+                : base.getScheme() + "://" + bucket + "." + authority;
+        return URI.create(prefix + "/" + encode(key, true));
+    }
+
+    private static String hostHeader(URI uri) {
+        return uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+    }
+
+    private static String canonicalQuery(Map<String, String> sortedQuery) {
+        StringBuilder query = new StringBuilder();
+        sortedQuery.forEach((name, value) -> {
+            if (!query.isEmpty()) {
+                query.append('&');
+            }
+            query.append(encode(name, false)).append('=').append(encode(value, false));
+        });
+        return query.toString();
+    }
+
+    /**
+     * URI-кодирование по правилам SigV4: без изменений только A-Z a-z 0-9 - _ . ~
+     */
+    private static String encode(String value, boolean keepSlash) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (keepSlash && c == '/')) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static Map<String, String> contentTypeHeader(String contentType) {
+        return contentType != null ? Map.of("Content-Type", contentType) : Map.of();
+    }
+
+    private static void expect(HttpResponse<String> response, int status, String operation) throws IOException {
+        if (response.statusCode() != status) {
+            throw failure(operation, response.statusCode(), response.body());
+        }
+    }
+
+    private static IOException failure(String operation, int status, String body) {
+        Matcher code = ERROR_CODE.matcher(body != null ? body : "");
+        return new IOException("S3 " + operation + " failed: HTTP " + status + (code.find() ? " " + code.group(1) : ""));
+    }
+
+    private static InputStream openRange(Path file, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ).position(offset);
+            return new FilterInputStream(Channels.newInputStream(channel)) {
+                private long remaining = length;
+
+                @Override
+                public int read() throws IOException {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    int b = super.read();
+                    if (b >= 0) {
+                        remaining--;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int off, int len) throws IOException {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    int n = super.read(buffer, off, (int) Math.min(len, remaining));
+                    if (n > 0) {
+                        remaining -= n;
+                    }
+                    return n;
+                }
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * SHA-256 части файла: S3 проверяет по нему целостность принятых байт
+     */
+    private static String sha256(Path file, long offset, long length) throws IOException {
+        MessageDigest digest = digest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(BUFFER_SIZE, end - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("File changed while uploading: " + file.getFileName());
+                }
+                digest.update(buffer.flip());
+                position += read;
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String sha256(byte[] data) {
+        return HexFormat.of().formatHex(digest().digest(data));
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private static String stripTrailingSlash(String value) {
+        return value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+    }
+}
@@ -1,9 +1,12 @@
 package kz.gov.rfs.service;
 
+import kz.gov.rfs.config.CacheConfig;
 import kz.gov.rfs.entity.Service;
 import kz.gov.rfs.entity.ServiceType;
 import kz.gov.rfs.repository.ServiceRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 
@@ -12,26 +15,31 @@ import java.util.List;
 public class ServiceService {
     private final ServiceRepository serviceRepository;
 
+    @Cacheable(value = CacheConfig.SERVICES, key = "'all'")
     public List<Service> getAllActiveServices() {
         return serviceRepository.findByIsActiveTrueOrderByDisplayOrder();
     }
 
+    @Cacheable(value = CacheConfig.SERVICES, key = "'type:' + #type")
     public List<Service> getServicesByType(ServiceType type) {
         return serviceRepository.findByServiceTypeAndIsActiveTrue(type);
     }
 
+    @Cacheable(value = CacheConfig.SERVICES, key = "#id")
     public Service getServiceById(Long id) {
         return serviceRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Service not found with id: " + id));
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.SERVICES, allEntries = true)
     public Service createService(Service service) {
         service.setIsActive(true);
         return serviceRepository.save(service);
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.SERVICES, allEntries = true)
     public Service updateService(Long id, Service serviceDetails) {
         Service service = getServiceById(id);
         service.setTitleRu(serviceDetails.getTitleRu());
@@ -48,6 +56,7 @@ public class ServiceService {
     }
 
     @Transactional
+    @CacheEvict(value = CacheConfig.SERVICES, allEntries = true)
     public void deleteService(Long id) {
         Service service = getServiceById(id);
         service.setIsActive(false);
@@ -0,0 +1,89 @@
+package kz.gov.rfs.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Параллельная обработка файлов пакетной загрузки на общем ограниченном пуле.
+ * Несколько одновременных пакетов делят upload.batch.threads потоков; если пул и очередь заняты,
+ * файл обрабатывается в потоке запроса — пакет замедляется, но не отклоняется.
+ */
+@Slf4j
+@Service
+public class UploadBatchProcessor {
+
+    private final ThreadPoolExecutor executor;
+
+    public UploadBatchProcessor(@Value("${upload.batch.threads:4}") int threads,
+                                @Value("${upload.batch.queue-capacity:100}") int queueCapacity,
+                                MeterRegistry meterRegistry) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "upload-batch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("upload.batch.queue", executor.getQueue(), BlockingQueue::size)
+                .description("Batch upload files waiting for a thread")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выполняет задачи параллельно и возвращает результаты в исходном порядке.
+     * Задача не должна бросать исключения — ошибки отдельного файла входят в его результат
+     */
+    public <T> List<T> runAll(List<Callable<T>> tasks) {
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            try {
+                futures.add(executor.submit(task));
+            } catch (RejectedExecutionException e) {
+                log.warn("⚠️ Upload batch pool is saturated, processing file in the request thread");
+                FutureTask<T> inline = new FutureTask<>(task);
+                inline.run();
+                futures.add(inline);
+            }
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new IllegalStateException("Batch upload interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IllegalStateException("Batch upload task failed", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,136 @@
+package kz.gov.rfs.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Готовые сжатые копии документов (name.pdf.gz) рядом с оригиналом: сжимаются один раз в фоне,
+ * а отдаются клиентам с Accept-Encoding: gzip без сжатия на каждый запрос.
+ * docx/xlsx — уже ZIP, для них копии не создаются (но .gz/.br, положенные вручную, отдаются).
+ * Только для локального хранилища: из S3 файлы отдаются клиентам напрямую, без выбора кодировки.
+ */
+@Slf4j
+@Service
+public class UploadPrecompressor {
+
+    public static final List<String> ENCODINGS = List.of("br", "gzip");
+
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = Set.of(".pdf", ".doc", ".xls");
+    private static final Set<String> SERVED_EXTENSIONS = Set.of(".pdf", ".doc", ".docx", ".xls", ".xlsx");
+    // Копия хранится, только если она хотя бы на 10% меньше оригинала
+    private static final double MAX_RATIO = 0.9;
+
+    private final BlobStore blobStore;
+    private final boolean enabled;
+    private final ThreadPoolExecutor executor;
+
+    public UploadPrecompressor(BlobStore blobStore,
+                               @Value("${upload.precompress.enabled:true}") boolean enabled) {
+        this.blobStore = blobStore;
+        this.enabled = enabled;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(100),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "upload-precompress");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Для каких файлов искать сжатые копии при отдаче
+     */
+    public static boolean isServedPrecompressed(String fileName) {
+        return SERVED_EXTENSIONS.contains(extension(fileName));
+    }
+
+    /**
+     * br -> name.pdf.br, gzip -> name.pdf.gz
+     */
+    public static Path sibling(Path original, String encoding) {
+        String suffix = encoding.equals("gzip") ? ".gz" : "." + encoding;
+        return original.resolveSibling(original.getFileName() + suffix);
+    }
+
+    /**
+     * @param key ключ оригинала в BlobStore
+     */
+    public void submit(String key) {
+        Path original = blobStore.localPath(key);
+        if (!enabled || original == null || !COMPRESSIBLE_EXTENSIONS.contains(extension(key))) {
+            return;
+        }
+        try {
+            executor.execute(() -> compress(original));
+        } catch (RejectedExecutionException e) {
+            log.warn("⚠️ Precompression queue is full, skipping {}", original.getFileName());
+        }
+    }
+
+    public void deleteSiblings(String key) throws IOException {
+        Path original = blobStore.localPath(key);
+        if (original == null) {
+            return;
+        }
+        for (String encoding : ENCODINGS) {
+            Files.deleteIfExists(sibling(original, encoding));
+        }
+    }
+
+    private void compress(Path original) {
+        Path target = sibling(original, "gzip");
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            }) {
+                Files.copy(original, out);
+            }
+
+            long originalSize = Files.size(original);
+            long compressedSize = Files.size(temp);
+            if (compressedSize > originalSize * MAX_RATIO) {
+                Files.delete(temp);
+                return;
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("✅ Precompressed {}: {} -> {} bytes", original.getFileName(), originalSize, compressedSize);
+        } catch (IOException e) {
+            log.error("❌ Failed to precompress {}: {}", original.getFileName(), e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Останется до ручной чистки
+            }
+        }
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot).toLowerCase(Locale.ROOT);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
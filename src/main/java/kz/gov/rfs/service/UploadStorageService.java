@@ -0,0 +1,319 @@
+package kz.gov.rfs.service;
+
+import jakarta.annotation.PostConstruct;
+import kz.gov.rfs.util.FileSignature;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Хранилище загрузок, адресуемое по содержимому: ключ ab/cd/&lt;sha256&gt;.&lt;ext&gt;.
+ * Одинаковые файлы хранятся один раз; учёт — в таблице upload_blobs, сами файлы — в BlobStore.
+ *
+ * Поток читается один раз: байты пишутся во временный файл в file.upload-dir через FileChannel,
+ * одновременно считается SHA-256 и проверяются magic bytes; затем файл передаётся в BlobStore.
+ * Для filesystem временный файл лежит в том же каталоге, поэтому rename не копирует данные.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UploadStorageService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    static final String TEMP_PREFIX = ".upload-";
+
+    private static final String UPSERT_SQL = "INSERT INTO upload_blobs (storage_key, sha256, size, content_type) " +
+            "VALUES (?, ?, ?, ?) ON CONFLICT (storage_key) DO UPDATE SET last_uploaded_at = now()";
+
+    /**
+     * Ключи (путь после /uploads/), на которые ссылаются сущности: поля с URL и ссылки внутри HTML-контента.
+     * Ссылка на вариант изображения (-thumb/-medium/-large) считается ссылкой на оригинал
+     */
+    private static final String REFERENCES_SQL =
+            "SELECT regexp_replace(k, '-(thumb|medium|large)(\\.[A-Za-z0-9]+)$', '\\2') AS storage_key FROM (" +
+                    "SELECT substring(url FROM '/uploads/([^?#]+)') AS k FROM (" +
+                    "SELECT image_url AS url FROM news " +
+                    "UNION ALL SELECT image_url FROM news_images " +
+                    "UNION ALL SELECT photo_url FROM employees " +
+                    "UNION ALL SELECT document_url FROM procurements " +
+                    "UNION ALL SELECT file_url FROM documents " +
+                    "UNION ALL SELECT icon_url FROM services) urls " +
+                    "UNION ALL SELECT m[1] FROM news, regexp_matches(concat_ws(' ', content_ru, content_kk, content_en), " +
+                    "'/uploads/([^\"''\\s?#<>)]+)', 'g') AS m " +
+                    "UNION ALL SELECT m[1] FROM about, regexp_matches(concat_ws(' ', content_ru, content_kk, content_en), " +
+                    "'/uploads/([^\"''\\s?#<>)]+)', 'g') AS m" +
+                    ") refs WHERE k IS NOT NULL";
+
+    private static final String RECOUNT_SQL = "WITH counts AS (" +
+            "SELECT storage_key, count(*) AS refs FROM (" + REFERENCES_SQL + ") r GROUP BY storage_key) " +
+            "UPDATE upload_blobs b SET ref_count = COALESCE(c.refs, 0) " +
+            "FROM upload_blobs x LEFT JOIN counts c ON c.storage_key = x.storage_key " +
+            "WHERE b.storage_key = x.storage_key AND b.ref_count <> COALESCE(c.refs, 0)";
+
+    private static final String COUNT_REFERENCES_SQL =
+            "SELECT count(*) FROM (" + REFERENCES_SQL + ") r WHERE storage_key = ?";
+
+    private static final String ORPHANS_SQL = "SELECT storage_key FROM upload_blobs " +
+            "WHERE ref_count = 0 AND last_uploaded_at < ? ORDER BY last_uploaded_at LIMIT ?";
+
+    private static final String LAST_UPLOADED_SQL = "SELECT last_uploaded_at FROM upload_blobs WHERE storage_key = ?";
+
+    // ref_count мог устареть с последнего пересчёта — ссылки на всю пачку проверяются заново
+    // одним проходом по сущностям. Строки остаются заблокированными до конца транзакции:
+    // параллельная загрузка того же файла дождётся удаления и положит файл заново
+    private static final String DELETE_UNREFERENCED_SQL = "WITH refs AS MATERIALIZED (" +
+            "SELECT storage_key FROM (" + REFERENCES_SQL + ") r WHERE r.storage_key = ANY(?)) " +
+            "DELETE FROM upload_blobs b WHERE b.storage_key = ANY(?) AND b.last_uploaded_at < ? " +
+            "AND NOT EXISTS (SELECT 1 FROM refs WHERE refs.storage_key = b.storage_key) " +
+            "RETURNING b.storage_key";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlobStore blobStore;
+    private final ImageDerivativeService imageDerivativeService;
+    private final UploadPrecompressor uploadPrecompressor;
+
+    @Value("${file.upload-dir:uploads}")
+    private String uploadDir;
+
+    // Каталог для приёма загрузок (временные файлы)
+    private Path uploadPath;
+
+    /**
+     * @param key       ключ в BlobStore, он же часть URL после /uploads/
+     * @param duplicate такой файл уже был загружен раньше
+     */
+    public record StoredFile(String key, long size, String sha256, String contentType, boolean duplicate) {
+
+        public String filename() {
+            return key.substring(key.lastIndexOf('/') + 1);
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Files.createDirectories(uploadPath);
+    }
+
+    /**
+     * &lt;sha256&gt;.&lt;ext&gt; -> ab/cd/&lt;sha256&gt;.&lt;ext&gt;
+     */
+    public static String storageKey(String contentFilename) {
+        return contentFilename.substring(0, 2) + "/" + contentFilename.substring(2, 4) + "/" + contentFilename;
+    }
+
+    /**
+     * @param extension уже проверенное расширение (с точкой)
+     * @throws IllegalArgumentException файл пустой, больше maxSize или содержимое не соответствует расширению
+     */
+    public StoredFile store(InputStream input, String extension, long maxSize) throws IOException {
+        String ext = extension.toLowerCase(Locale.ROOT);
+        Path temp = uploadPath.resolve(TEMP_PREFIX + UUID.randomUUID() + ext);
+
+        MessageDigest digest = sha256();
+        byte[] header = new byte[FileSignature.HEADER_LENGTH];
+        int headerLength = 0;
+        long size = 0;
+
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxSize) {
+                        throw new IllegalArgumentException("File size exceeds " + maxSize / (1024 * 1024) + "MB limit");
+                    }
+                    if (headerLength < header.length) {
+                        int n = Math.min(read, header.length - headerLength);
+                        System.arraycopy(buffer, 0, header, headerLength, n);
+                        headerLength += n;
+                    }
+                    digest.update(buffer, 0, read);
+
+                    byteBuffer.clear().limit(read);
+                    while (byteBuffer.hasRemaining()) {
+                        channel.write(byteBuffer);
+                    }
+                }
+            }
+
+            if (size == 0) {
+                throw new IllegalArgumentException("File is empty");
+            }
+            String contentType = FileSignature.detect(header, headerLength, ext);
+            if (contentType == null) {
+                log.error("🚨 SECURITY: File content does not match extension {}", ext);
+                throw new IllegalArgumentException("File content does not match its extension");
+            }
+
+            return storeFile(temp, ext, HexFormat.of().formatHex(digest.digest()), size, contentType);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Уже записанный и проверенный локальный файл (например, собранный из частей).
+     * Файл может быть перемещён в хранилище; если нет — удаляет вызывающий
+     */
+    public StoredFile storeFile(Path file, String extension, String sha256, long size, String contentType)
+            throws IOException {
+        String key = storageKey(sha256 + extension.toLowerCase(Locale.ROOT));
+
+        // Сначала запись в БД (сдвигает last_uploaded_at), потом файл — так чистка не удалит его между шагами
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.update(UPSERT_SQL, key, sha256, size, contentType));
+
+        // Одинаковое содержимое — тот же ключ, второй раз не пишем
+        boolean duplicate = !blobStore.put(key, file, contentType);
+
+        return new StoredFile(key, size, sha256, contentType, duplicate);
+    }
+
+    /**
+     * Сколько ссылок на файл есть в сущностях прямо сейчас
+     */
+    public long countReferences(String key) {
+        Long count = transactionTemplate.execute(status ->
+                jdbcTemplate.queryForObject(COUNT_REFERENCES_SQL, Long.class, key));
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Пересчёт ref_count по текущим ссылкам из сущностей
+     *
+     * @return сколько счётчиков изменилось
+     */
+    public int recountReferences() {
+        Integer updated = transactionTemplate.execute(status -> jdbcTemplate.update(RECOUNT_SQL));
+        return updated != null ? updated : 0;
+    }
+
+    /**
+     * Удаляет файлы без ссылок, которые не загружались повторно дольше grace
+     *
+     * @return сколько файлов удалено
+     */
+    public int deleteOrphans(Duration grace, int limit) {
+        Instant cutoff = Instant.now().minus(grace);
+        List<String> candidates = transactionTemplate.execute(status -> jdbcTemplate.queryForList(
+                ORPHANS_SQL, String.class, Timestamp.from(cutoff), limit));
+        if (candidates == null || candidates.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            return deleteBlobs(candidates, cutoff).size();
+        } catch (Exception e) {
+            // Пачка откатывается целиком и будет повторена при следующем проходе
+            log.error("❌ Failed to delete {} orphaned uploads: {}", candidates.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Когда файл последний раз загружался; null — файла нет в upload_blobs
+     */
+    public Instant lastUploadedAt(String key) {
+        List<Timestamp> rows = transactionTemplate.execute(status ->
+                jdbcTemplate.queryForList(LAST_UPLOADED_SQL, Timestamp.class, key));
+        return rows == null || rows.isEmpty() ? null : rows.get(0).toInstant();
+    }
+
+    /**
+     * Удаление по запросу: только без ссылок и не раньше grace после последней загрузки
+     * (свежий файл мог быть загружен для ещё не сохранённой новости)
+     *
+     * @return false — файла нет, на него появилась ссылка или его загрузили снова
+     */
+    public boolean deleteBlob(String key, Duration grace) {
+        return !deleteBlobs(List.of(key), Instant.now().minus(grace)).isEmpty();
+    }
+
+    /**
+     * Файлы старых загрузок (UUID-имена), не учтённые в upload_blobs
+     *
+     * @return false — файла нет
+     */
+    public boolean deleteFile(String key) throws IOException {
+        boolean deleted = blobStore.delete(key);
+        imageDerivativeService.deleteVariants(key);
+        uploadPrecompressor.deleteSiblings(key);
+        return deleted;
+    }
+
+    /**
+     * @return ключи, строки и файлы которых удалены
+     */
+    private List<String> deleteBlobs(List<String> keys, Instant uploadedBefore) {
+        List<String> deleted = transactionTemplate.execute(status -> {
+            List<String> rows = jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(DELETE_UNREFERENCED_SQL);
+                ps.setArray(1, connection.createArrayOf("varchar", keys.toArray()));
+                ps.setArray(2, connection.createArrayOf("varchar", keys.toArray()));
+                ps.setTimestamp(3, Timestamp.from(uploadedBefore));
+                return ps;
+            }, (rs, rowNum) -> rs.getString(1));
+            // Файлы удаляются до коммита, пока строки заблокированы
+            for (String key : rows) {
+                try {
+                    deleteFile(key);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to delete " + key, e);
+                }
+            }
+            return rows;
+        });
+        return deleted != null ? deleted : List.of();
+    }
+
+    /**
+     * Временные файлы прерванных загрузок
+     */
+    public int deleteStaleTempFiles(Duration maxAge) throws IOException {
+        Instant cutoff = Instant.now().minus(maxAge);
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(uploadPath, TEMP_PREFIX + "*")) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package kz.gov.rfs.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.regex.Pattern;
+
+/**
+ * IP клиента с учётом заголовков прокси
+ */
+public final class ClientIp {
+
+    // Заголовки задаёт клиент: принимаем только IPv4/IPv6-литерал, значение идёт в ключи лимитов и колонки БД
+    private static final Pattern IP_LITERAL = Pattern.compile("[0-9A-Fa-f:.]{2,45}");
+
+    private ClientIp() {
+    }
+
+    public static String resolve(HttpServletRequest request) {
+        // Проверка заголовков прокси
+        String ip = firstAddress(request.getHeader("X-Forwarded-For"));
+        if (ip == null) {
+            ip = firstAddress(request.getHeader("X-Real-IP"));
+        }
+        if (ip == null) {
+            ip = request.getRemoteAddr();
+        }
+        return ip;
+    }
+
+    /**
+     * Если заголовок содержит несколько IP (через запятую), берем первый; null — адреса нет или он некорректен
+     */
+    private static String firstAddress(String header) {
+        if (header == null) {
+            return null;
+        }
+        int comma = header.indexOf(',');
+        String ip = (comma >= 0 ? header.substring(0, comma) : header).trim();
+        return IP_LITERAL.matcher(ip).matches() ? ip : null;
+    }
+}
@@ -0,0 +1,84 @@
+package kz.gov.rfs.util;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Определение типа файла по первым байтам (magic bytes), а не по Content-Type от клиента
+ */
+public final class FileSignature {
+
+    /**
+     * Сколько первых байт нужно для определения любого из поддерживаемых типов
+     */
+    public static final int HEADER_LENGTH = 12;
+
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] GIF87 = {'G', 'I', 'F', '8', '7', 'a'};
+    private static final byte[] GIF89 = {'G', 'I', 'F', '8', '9', 'a'};
+    private static final byte[] RIFF = {'R', 'I', 'F', 'F'};
+    private static final byte[] WEBP = {'W', 'E', 'B', 'P'};
+    private static final byte[] PDF = {'%', 'P', 'D', 'F', '-'};
+    // Старые форматы Office (doc, xls) — контейнер OLE2
+    private static final byte[] OLE2 = {(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1};
+    // docx, xlsx — ZIP
+    private static final byte[] ZIP = {'P', 'K', 0x03, 0x04};
+
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            ".jpg", "image/jpeg",
+            ".jpeg", "image/jpeg",
+            ".png", "image/png",
+            ".gif", "image/gif",
+            ".webp", "image/webp",
+            ".pdf", "application/pdf",
+            ".doc", "application/msword",
+            ".docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            ".xls", "application/vnd.ms-excel",
+            ".xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"
+    );
+
+    private FileSignature() {
+    }
+
+    /**
+     * @return Content-Type по расширению из списка разрешённых, иначе null
+     */
+    public static String contentType(String extension) {
+        return CONTENT_TYPES.get(extension.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return Content-Type для расширения, если содержимое ему соответствует, иначе null
+     */
+    public static String detect(byte[] header, int length, String extension) {
+        String ext = extension.toLowerCase(Locale.ROOT);
+        boolean matches = switch (ext) {
+            case ".jpg", ".jpeg" -> startsWith(header, length, JPEG);
+            case ".png" -> startsWith(header, length, PNG);
+            case ".gif" -> startsWith(header, length, GIF87) || startsWith(header, length, GIF89);
+            case ".webp" -> startsWith(header, length, RIFF) && regionMatches(header, length, 8, WEBP);
+            case ".pdf" -> startsWith(header, length, PDF);
+            case ".doc", ".xls" -> startsWith(header, length, OLE2);
+            case ".docx", ".xlsx" -> startsWith(header, length, ZIP);
+            default -> false;
+        };
+        return matches ? CONTENT_TYPES.get(ext) : null;
+    }
+
+    private static boolean startsWith(byte[] header, int length, byte[] signature) {
+        return regionMatches(header, length, 0, signature);
+    }
+
+    private static boolean regionMatches(byte[] header, int length, int offset, byte[] signature) {
+        if (length < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (header[offset + i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
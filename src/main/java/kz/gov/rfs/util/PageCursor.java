@@ -0,0 +1,75 @@
+package kz.gov.rfs.util;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор keyset-пагинации: последняя отданная пара (значение сортировки, id),
+ * закодированная в base64url. Пустое значение сортировки означает NULL.
+ */
+public record PageCursor(String sortValue, Long id) {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * Размер страницы из запроса: 1..MAX_PAGE_SIZE, чтобы size + 1 не выходил за пределы
+     */
+    public static int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    public static String encode(Object sortValue, Long id) {
+        String raw = (sortValue == null ? "" : sortValue.toString()) + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Пустой курсор (?after=) — первая страница в keyset-режиме, возвращает null
+     *
+     * @throws ResponseStatusException 400 — курсор повреждён
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int comma = raw.lastIndexOf(',');
+            if (comma < 0) {
+                throw invalidCursor();
+            }
+            return new PageCursor(raw.substring(0, comma), Long.parseLong(raw.substring(comma + 1)));
+        } catch (IllegalArgumentException e) {
+            throw invalidCursor();
+        }
+    }
+
+    public LocalDateTime sortValueAsDateTime() {
+        try {
+            return LocalDateTime.parse(sortValue);
+        } catch (DateTimeParseException e) {
+            throw invalidCursor();
+        }
+    }
+
+    public LocalDate sortValueAsDate() {
+        if (sortValue.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(sortValue);
+        } catch (DateTimeParseException e) {
+            throw invalidCursor();
+        }
+    }
+
+    private static ResponseStatusException invalidCursor() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page cursor");
+    }
+}
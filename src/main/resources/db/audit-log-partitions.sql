@@ -0,0 +1,105 @@
+-- Журнал аудита: помесячное RANGE-партиционирование по "timestamp".
+-- Скрипт идемпотентный, выполняется при каждом старте (spring.sql.init), разделитель: ^;
+-- Старые партиции выгружает в архив и удаляет AuditLogRetentionScheduler.
+-- Все изменения схемы — под advisory lock 'audit-logs-schema': ноды, стартующие одновременно, не мешают друг другу.
+
+CREATE OR REPLACE FUNCTION audit_logs_ensure_partition(month_start date) RETURNS void AS $$
+DECLARE
+    from_date      date := date_trunc('month', month_start)::date;
+    partition_name text := 'audit_logs_p' || to_char(from_date, 'YYYYMM');
+    to_date        date := (date_trunc('month', month_start) + interval '1 month')::date;
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN;
+    END IF;
+
+    PERFORM pg_advisory_xact_lock(hashtext('audit-logs-schema'));
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN;
+    END IF;
+
+    -- Строки этого месяца в DEFAULT-партиции не дают создать партицию: переносим их в новую таблицу
+    -- и присоединяем её (FK и индексы наследуются при ATTACH)
+    IF to_regclass('audit_logs_default') IS NOT NULL THEN
+        LOCK TABLE audit_logs_default IN ACCESS EXCLUSIVE MODE;
+        IF EXISTS (SELECT 1 FROM audit_logs_default WHERE "timestamp" >= from_date AND "timestamp" < to_date) THEN
+            EXECUTE format('CREATE TABLE %I (LIKE audit_logs INCLUDING DEFAULTS)', partition_name);
+            EXECUTE format('WITH moved AS (DELETE FROM audit_logs_default '
+                           'WHERE "timestamp" >= %L AND "timestamp" < %L RETURNING *) '
+                           'INSERT INTO %I SELECT * FROM moved', from_date, to_date, partition_name);
+            EXECUTE format('ALTER TABLE audit_logs ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                           partition_name, from_date, to_date);
+            RETURN;
+        END IF;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I PARTITION OF audit_logs FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, from_date, to_date);
+END
+$$ LANGUAGE plpgsql^;
+
+-- Однократный перевод обычной таблицы (созданной Hibernate) в партиционированную.
+-- При старте только переименование и новая таблица; строки из audit_logs_legacy порциями
+-- переносит AuditLogRetentionScheduler, после чего удаляет её
+DO $$
+DECLARE
+    idx record;
+BEGIN
+    -- Вторая нода ждёт здесь и после блокировки видит уже готовую таблицу
+    PERFORM pg_advisory_xact_lock(hashtext('audit-logs-schema'));
+
+    IF EXISTS (SELECT 1 FROM pg_partitioned_table pt
+               JOIN pg_class c ON c.oid = pt.partrelid
+               WHERE c.relname = 'audit_logs' AND c.relnamespace = current_schema()::regnamespace) THEN
+        RETURN;
+    END IF;
+
+    CREATE SEQUENCE IF NOT EXISTS audit_logs_seq;
+
+    IF to_regclass('audit_logs') IS NOT NULL THEN
+        ALTER TABLE audit_logs RENAME TO audit_logs_legacy;
+        -- Имена индексов (и первичного ключа) общие на схему: освобождаем их для новой таблицы
+        FOR idx IN SELECT c.relname FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+                   WHERE i.indrelid = 'audit_logs_legacy'::regclass LOOP
+            EXECUTE format('ALTER INDEX %I RENAME TO %I', idx.relname, left(idx.relname, 56) || '_legacy');
+        END LOOP;
+        -- max(id) берётся по первичному ключу, без чтения таблицы
+        PERFORM setval('audit_logs_seq', coalesce((SELECT max(id) FROM audit_logs_legacy), 0) + 1, false);
+    END IF;
+
+    -- Ключ партиционирования обязан входить в первичный ключ
+    CREATE TABLE audit_logs (
+        id          bigint       NOT NULL DEFAULT nextval('audit_logs_seq'),
+        user_id     bigint       REFERENCES users (id),
+        action      varchar(255) NOT NULL,
+        entity_type varchar(255) NOT NULL,
+        entity_id   bigint,
+        details     text,
+        ip_address  varchar(255),
+        "timestamp" timestamp(6) NOT NULL,
+        PRIMARY KEY (id, "timestamp")
+    ) PARTITION BY RANGE ("timestamp");
+
+    ALTER SEQUENCE audit_logs_seq OWNED BY audit_logs.id;
+
+    CREATE TABLE audit_logs_default PARTITION OF audit_logs DEFAULT;
+END
+$$^;
+
+-- Партиции на текущий и два следующих месяца (дальше их создаёт планировщик)
+DO $$
+BEGIN
+    FOR i IN 0..2 LOOP
+        PERFORM audit_logs_ensure_partition((date_trunc('month', now()) + make_interval(months => i))::date);
+    END LOOP;
+END
+$$^;
+
+-- findAllByOrderByTimestampDesc / keyset-пагинация
+CREATE INDEX IF NOT EXISTS idx_audit_log_timestamp ON audit_logs ("timestamp", id)^;
+
+-- findByUserIdOrderByTimestampDesc
+CREATE INDEX IF NOT EXISTS idx_audit_log_user_timestamp ON audit_logs (user_id, "timestamp")^;
+
+-- findByEntityTypeAndEntityIdOrderByTimestampDesc
+CREATE INDEX IF NOT EXISTS idx_audit_log_entity_timestamp ON audit_logs (entity_type, entity_id, "timestamp")^;
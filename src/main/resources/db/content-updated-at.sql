@@ -0,0 +1,8 @@
+-- Время последнего изменения публичного контента: из max(updated_at) и count(*)
+-- строятся ETag для условных GET. Скрипт идемпотентный, разделитель: ^;
+
+ALTER TABLE services ADD COLUMN IF NOT EXISTS updated_at timestamp(6) NOT NULL DEFAULT now()^;
+ALTER TABLE contacts ADD COLUMN IF NOT EXISTS updated_at timestamp(6) NOT NULL DEFAULT now()^;
+ALTER TABLE departments ADD COLUMN IF NOT EXISTS updated_at timestamp(6) NOT NULL DEFAULT now()^;
+ALTER TABLE about ADD COLUMN IF NOT EXISTS updated_at timestamp(6) NOT NULL DEFAULT now()^;
+ALTER TABLE procurements ADD COLUMN IF NOT EXISTS updated_at timestamp(6) NOT NULL DEFAULT now()^;
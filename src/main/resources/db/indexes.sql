@@ -0,0 +1,18 @@
+-- Индексы, которые объявлены в @Table(indexes = ...), но не создаются при ddl-auto=validate.
+-- Скрипт идемпотентный, разделитель: ^;
+
+-- Keyset-пагинация: ORDER BY publish_date DESC, id DESC
+CREATE INDEX IF NOT EXISTS idx_procurement_active_date ON procurements (is_active, publish_date, id)^;
+
+-- Keyset-пагинация новостей: ORDER BY published_date DESC, id DESC. Старый индекс без id пересоздаётся
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_indexes
+               WHERE schemaname = current_schema() AND indexname = 'idx_news_active_date'
+                 AND indexdef NOT LIKE '%(is_active, published_date, id)') THEN
+        DROP INDEX idx_news_active_date;
+    END IF;
+END
+$$^;
+
+CREATE INDEX IF NOT EXISTS idx_news_active_date ON news (is_active, published_date, id)^;
@@ -0,0 +1,13 @@
+-- Неудачные попытки входа и блокировки (auth.lockout.store=postgres), общие для всех инстансов.
+-- Скрипт идемпотентный, разделитель: ^;
+
+CREATE TABLE IF NOT EXISTS login_attempts (
+    username     varchar(255) PRIMARY KEY,
+    attempts     integer      NOT NULL,
+    locked_until timestamptz,
+    updated_at   timestamptz  NOT NULL
+)^;
+
+-- Загрузка действующих блокировок каждую секунду
+CREATE INDEX IF NOT EXISTS idx_login_attempts_locked_until ON login_attempts (locked_until)
+    WHERE locked_until IS NOT NULL^;
@@ -0,0 +1,36 @@
+-- Полнотекстовый поиск по новостям (ru / kk / en).
+-- Скрипт идемпотентный, выполняется при каждом старте (spring.sql.init), разделитель: ^;
+
+-- Для казахского языка нет стеммера в PostgreSQL — используем копию конфигурации simple
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_ts_config WHERE cfgname = 'kazakh') THEN
+        CREATE TEXT SEARCH CONFIGURATION kazakh (COPY = simple);
+    END IF;
+END
+$$^;
+
+ALTER TABLE news ADD COLUMN IF NOT EXISTS search_ru tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('russian'::regconfig, coalesce(title_ru, '')), 'A') ||
+        setweight(to_tsvector('russian'::regconfig, coalesce(short_description_ru, '')), 'B') ||
+        setweight(to_tsvector('russian'::regconfig, coalesce(content_ru, '')), 'C')
+    ) STORED^;
+
+ALTER TABLE news ADD COLUMN IF NOT EXISTS search_kk tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('kazakh'::regconfig, coalesce(title_kk, '')), 'A') ||
+        setweight(to_tsvector('kazakh'::regconfig, coalesce(short_description_kk, '')), 'B') ||
+        setweight(to_tsvector('kazakh'::regconfig, coalesce(content_kk, '')), 'C')
+    ) STORED^;
+
+ALTER TABLE news ADD COLUMN IF NOT EXISTS search_en tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('english'::regconfig, coalesce(title_en, '')), 'A') ||
+        setweight(to_tsvector('english'::regconfig, coalesce(short_description_en, '')), 'B') ||
+        setweight(to_tsvector('english'::regconfig, coalesce(content_en, '')), 'C')
+    ) STORED^;
+
+CREATE INDEX IF NOT EXISTS idx_news_search_ru ON news USING GIN (search_ru)^;
+CREATE INDEX IF NOT EXISTS idx_news_search_kk ON news USING GIN (search_kk)^;
+CREATE INDEX IF NOT EXISTS idx_news_search_en ON news USING GIN (search_en)^;
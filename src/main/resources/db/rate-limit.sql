@@ -0,0 +1,10 @@
+-- Общие счётчики rate limiting (rate-limit.store=postgres): по минутным окнам на политику и клиента.
+-- UNLOGGED: данные краткоживущие, WAL для них не нужен. Скрипт идемпотентный, разделитель: ^;
+
+CREATE UNLOGGED TABLE IF NOT EXISTS rate_limit_counters (
+    policy        varchar(32)  NOT NULL,
+    client_key    varchar(128) NOT NULL,
+    window_minute bigint       NOT NULL,
+    hits          integer      NOT NULL,
+    PRIMARY KEY (policy, client_key, window_minute)
+)^;
@@ -0,0 +1,67 @@
+-- Refresh-токены: несколько сессий на пользователя, в БД хранится только SHA-256 токена,
+-- ротация одним UPDATE ... RETURNING и обнаружение повторного использования по семейству.
+-- Скрипт идемпотентный, разделитель: ^;
+
+ALTER TABLE refresh_tokens ADD COLUMN IF NOT EXISTS token_hash varchar(64)^;
+ALTER TABLE refresh_tokens ADD COLUMN IF NOT EXISTS family_id varchar(36)^;
+ALTER TABLE refresh_tokens ADD COLUMN IF NOT EXISTS rotated_at timestamptz^;
+ALTER TABLE refresh_tokens ADD COLUMN IF NOT EXISTS device_name varchar(255)^;
+ALTER TABLE refresh_tokens ADD COLUMN IF NOT EXISTS ip_address varchar(45)^;
+ALTER TABLE refresh_tokens ADD COLUMN IF NOT EXISTS created_at timestamptz^;
+ALTER TABLE refresh_tokens ADD COLUMN IF NOT EXISTS last_used_at timestamptz^;
+
+DO $$
+DECLARE
+    con record;
+BEGIN
+    -- Открытые токены -> SHA-256, открытый столбец удаляется вместе со своим индексом
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = 'refresh_tokens' AND column_name = 'token') THEN
+        UPDATE refresh_tokens SET token_hash = encode(sha256(convert_to(token, 'UTF8')), 'hex') WHERE token_hash IS NULL;
+        ALTER TABLE refresh_tokens DROP COLUMN token;
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = 'refresh_tokens' AND column_name = 'previous_token') THEN
+        ALTER TABLE refresh_tokens DROP COLUMN previous_token;
+    END IF;
+
+    -- Раньше на пользователя допускался один токен (UNIQUE user_id)
+    FOR con IN
+        SELECT c.conname FROM pg_constraint c
+        JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = ANY (c.conkey)
+        WHERE c.conrelid = 'refresh_tokens'::regclass AND c.contype = 'u'
+          AND a.attname = 'user_id' AND array_length(c.conkey, 1) = 1
+    LOOP
+        EXECUTE format('ALTER TABLE refresh_tokens DROP CONSTRAINT %I', con.conname);
+    END LOOP;
+END
+$$^;
+
+UPDATE refresh_tokens SET family_id = gen_random_uuid()::text WHERE family_id IS NULL^;
+UPDATE refresh_tokens SET created_at = now() WHERE created_at IS NULL^;
+UPDATE refresh_tokens SET last_used_at = created_at WHERE last_used_at IS NULL^;
+
+ALTER TABLE refresh_tokens ALTER COLUMN token_hash SET NOT NULL^;
+ALTER TABLE refresh_tokens ALTER COLUMN family_id SET NOT NULL^;
+ALTER TABLE refresh_tokens ALTER COLUMN created_at SET NOT NULL^;
+ALTER TABLE refresh_tokens ALTER COLUMN last_used_at SET NOT NULL^;
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_refresh_token_hash ON refresh_tokens (token_hash)^;
+
+-- Одна строка на семейство (вход), ротация обновляет её на месте
+CREATE UNIQUE INDEX IF NOT EXISTS idx_refresh_token_family ON refresh_tokens (family_id)^;
+
+-- Хэши всех заменённых токенов семейства: повтор любого из них (а не только последнего) отзывает семейство.
+-- Удаляются вместе с сессией
+CREATE TABLE IF NOT EXISTS refresh_token_used (
+    token_hash varchar(64) PRIMARY KEY,
+    family_id  varchar(36) NOT NULL REFERENCES refresh_tokens (family_id) ON DELETE CASCADE,
+    used_at    timestamptz NOT NULL
+)^;
+
+CREATE INDEX IF NOT EXISTS idx_refresh_token_used_family ON refresh_token_used (family_id)^;
+
+-- Раньше хранилось только последнее поколение
+DROP INDEX IF EXISTS idx_refresh_token_previous^;
+ALTER TABLE refresh_tokens DROP COLUMN IF EXISTS previous_token_hash^;
@@ -0,0 +1,4 @@
+-- Версия токенов пользователя: увеличивается при смене роли/статуса/пароля и при logout,
+-- access-токены со старой версией отклоняются. Скрипт идемпотентный, разделитель: ^;
+
+ALTER TABLE users ADD COLUMN IF NOT EXISTS token_version integer NOT NULL DEFAULT 0^;
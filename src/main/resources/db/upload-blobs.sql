@@ -0,0 +1,16 @@
+-- Загруженные файлы, адресуемые по содержимому: uploads/ab/cd/<sha256>.<ext>.
+-- ref_count пересчитывается по ссылкам из сущностей (UploadOrphanSweeper), файлы без ссылок удаляются.
+-- Скрипт идемпотентный, разделитель: ^;
+
+CREATE TABLE IF NOT EXISTS upload_blobs (
+    storage_key      varchar(100) PRIMARY KEY,
+    sha256           char(64)     NOT NULL,
+    size             bigint       NOT NULL,
+    content_type     varchar(100) NOT NULL,
+    ref_count        integer      NOT NULL DEFAULT 0,
+    created_at       timestamptz  NOT NULL DEFAULT now(),
+    last_uploaded_at timestamptz  NOT NULL DEFAULT now()
+)^;
+
+-- Кандидаты на удаление: без ссылок, давно не загружались повторно
+CREATE INDEX IF NOT EXISTS idx_upload_blobs_orphans ON upload_blobs (last_uploaded_at) WHERE ref_count = 0^;
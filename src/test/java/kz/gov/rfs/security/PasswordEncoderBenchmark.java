@@ -0,0 +1,85 @@
+package kz.gov.rfs.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность входа (проверок пароля в секунду) по алгоритму и стоимости хэша.
+ *
+ * verify — одна проверка на одном ядре; loginBurst — 16 одновременных входов через BoundedPasswordEncoder
+ * с настройками по умолчанию (половина ядер, очередь 50), т.е. потолок входа на этой машине.
+ *
+ * Запуск: mvn test-compile, затем
+ * java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)"
+ * kz.gov.rfs.security.PasswordEncoderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+
+    private static final String PASSWORD = "Correct-Horse-Battery-9";
+
+    @Param({"bcrypt-10", "bcrypt-11", "bcrypt-12", "bcrypt-13", "argon2"})
+    public String encoder;
+
+    private PasswordEncoder delegate;
+    private BoundedPasswordEncoder bounded;
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        delegate = encoder.startsWith("bcrypt-")
+                ? new BCryptPasswordEncoder(Integer.parseInt(encoder.substring("bcrypt-".length())))
+                : Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8();
+        hash = delegate.encode(PASSWORD);
+
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        bounded = new BoundedPasswordEncoder(delegate, threads, 50, 60_000, new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() {
+        bounded.shutdown();
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return delegate.matches(PASSWORD, hash);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean loginBurst() {
+        return bounded.matches(PASSWORD, hash);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PasswordEncoderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,209 @@
+package kz.gov.rfs.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Общий бюджет нескольких инстансов на локальном заменителе таблицы rate_limit_counters
+ */
+class PostgresRateLimitStoreTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-01-01T10:00:05Z"));
+    private final SharedCounterTable table = new SharedCounterTable();
+    private RateLimitPolicy policy;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("rate-limit.login.capacity", "10")
+                .withProperty("rate-limit.login.per-minute", "10");
+        policy = RateLimitPolicy.fromEnvironment("login", 5, 5, environment, meterRegistry);
+    }
+
+    @Test
+    void nodesEnforceOneGlobalBudget() {
+        Node first = new Node();
+        Node second = new Node();
+
+        for (int i = 0; i < 6; i++) {
+            assertThat(first.tryAcquire(policy, "10.0.0.1")).isZero();
+        }
+        first.flush();
+
+        assertThat(second.tryAcquire(policy, "10.0.0.1")).isZero();
+        second.flush();
+        assertThat(table.hits("login", "10.0.0.1")).isEqualTo(7);
+
+        // Второй инстанс знает о 7 запросах из 10
+        for (int i = 0; i < 3; i++) {
+            assertThat(second.tryAcquire(policy, "10.0.0.1")).isZero();
+        }
+        assertThat(second.tryAcquire(policy, "10.0.0.1")).isPositive();
+    }
+
+    @Test
+    void longClientKeyIsHashedToFitTheColumn() {
+        Node node = new Node();
+        String forged = "x".repeat(5000);
+
+        assertThat(node.tryAcquire(policy, forged)).isZero();
+        node.flush();
+
+        assertThat(table.rows).hasSize(1);
+        assertThat(table.rows.keySet().iterator().next().length())
+                .isLessThan(PostgresRateLimitStore.MAX_CLIENT_KEY_LENGTH + "login".length() + 20);
+        assertThat(table.rejectedCalls).isZero();
+    }
+
+    @Test
+    void rejectedRowDoesNotBlockOtherCounters() {
+        Node node = new Node();
+        table.rejectedKey = "10.0.0.66";
+
+        node.tryAcquire(policy, "10.0.0.1");
+        node.tryAcquire(policy, "10.0.0.66");
+        node.flush();
+
+        assertThat(table.hits("login", "10.0.0.1")).isEqualTo(1);
+        assertThat(table.hits("login", "10.0.0.66")).isZero();
+
+        // Отвергнутая строка больше не отправляется
+        int calls = table.calls;
+        node.flush();
+        assertThat(table.calls).isEqualTo(calls);
+    }
+
+    @Test
+    void failedSyncIsRetriedAFewTimesThenDropped() {
+        Node node = new Node();
+        table.failure.set(new DataAccessResourceFailureException("connection refused"));
+
+        node.tryAcquire(policy, "10.0.0.1");
+        for (int i = 0; i < 10; i++) {
+            node.flush();
+        }
+
+        assertThat(table.calls).isEqualTo(5);
+        // Запрос по-прежнему учитывается локально
+        for (int i = 0; i < 9; i++) {
+            assertThat(node.tryAcquire(policy, "10.0.0.1")).isZero();
+        }
+        assertThat(node.tryAcquire(policy, "10.0.0.1")).isPositive();
+    }
+
+    @Test
+    void deltaOfAPastWindowIsNotRequeued() {
+        Node node = new Node();
+        table.failure.set(new DataAccessResourceFailureException("connection refused"));
+
+        node.tryAcquire(policy, "10.0.0.1");
+        node.flush();
+        assertThat(table.calls).isEqualTo(1);
+
+        // Клиент больше не приходит, окно сменилось: дельту не отправляем бесконечно
+        clock.advanceMillis(60_000);
+        table.failure.set(null);
+        node.flush();
+        node.flush();
+        assertThat(table.calls).isEqualTo(1);
+    }
+
+    /**
+     * Инстанс приложения: вместо JDBC пишет в общую таблицу-заменитель
+     */
+    private final class Node extends PostgresRateLimitStore {
+
+        private Node() {
+            super(null, null, meterRegistry, 1000, clock);
+        }
+
+        @Override
+        void upsert(List<Delta> batch, Map<String, Long> totals) {
+            table.upsert(batch, totals);
+        }
+    }
+
+    /**
+     * Заменитель rate_limit_counters: та же семантика INSERT ... ON CONFLICT DO UPDATE ... RETURNING,
+     * client_key varchar(128), оператор атомарный — при ошибке ничего не записывается
+     */
+    private static final class SharedCounterTable {
+        private final Map<String, Long> rows = new HashMap<>();
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        private String rejectedKey;
+        private int calls;
+        private int rejectedCalls;
+
+        synchronized void upsert(List<PostgresRateLimitStore.Delta> batch, Map<String, Long> totals) {
+            calls++;
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            for (PostgresRateLimitStore.Delta delta : batch) {
+                if (delta.clientKey().length() > PostgresRateLimitStore.MAX_CLIENT_KEY_LENGTH
+                        || delta.clientKey().equals(rejectedKey)) {
+                    rejectedCalls++;
+                    throw new DataIntegrityViolationException("value too long for type character varying(128)");
+                }
+            }
+            Map<String, Long> updated = new HashMap<>();
+            for (PostgresRateLimitStore.Delta delta : batch) {
+                String key = PostgresRateLimitStore.key(delta.policy(), delta.clientKey(), delta.window());
+                long hits = rows.getOrDefault(key, 0L) + delta.hits();
+                rows.put(key, hits);
+                updated.put(key, hits);
+            }
+            totals.putAll(updated);
+        }
+
+        synchronized long hits(String policy, String clientKey) {
+            return rows.entrySet().stream()
+                    .filter(e -> e.getKey().startsWith(policy + '\u0000' + clientKey + '\u0000'))
+                    .mapToLong(Map.Entry::getValue)
+                    .sum();
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advanceMillis(long millis) {
+            now = now.plusMillis(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package kz.gov.rfs.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * S3BlobStore против локального заменителя S3: заменитель сам проверяет подпись SigV4
+ * (своей канонизацией запроса) и SHA-256 тела, поэтому ошибка подписи в S3BlobStore здесь не "совпадёт сама с собой"
+ */
+class S3BlobStoreTest {
+
+    private static final String ACCESS_KEY = "test-access";
+    private static final String SECRET_KEY = "test-secret";
+    private static final String REGION = "kz-test-1";
+    private static final String BUCKET = "uploads";
+    private static final int PART_SIZE_MB = 5;
+
+    @TempDir
+    Path tempDir;
+
+    private FakeS3 s3;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        s3 = new FakeS3();
+    }
+
+    @AfterEach
+    void tearDown() {
+        s3.stop();
+    }
+
+    @Test
+    void storesReadsAndDeletesObject() throws IOException {
+        S3BlobStore store = store(SECRET_KEY);
+        byte[] content = "%PDF-1.7 test".getBytes(StandardCharsets.UTF_8);
+        Path source = write("doc.pdf", content);
+
+        assertThat(store.exists("ab/cd/doc.pdf")).isFalse();
+        assertThat(store.put("ab/cd/doc.pdf", source, "application/pdf")).isTrue();
+        assertThat(store.put("ab/cd/doc.pdf", source, "application/pdf")).isFalse();
+
+        assertThat(s3.object("ab/cd/doc.pdf")).isEqualTo(content);
+        assertThat(s3.contentType("ab/cd/doc.pdf")).isEqualTo("application/pdf");
+        try (InputStream input = store.open("ab/cd/doc.pdf")) {
+            assertThat(input.readAllBytes()).isEqualTo(content);
+        }
+
+        assertThat(store.delete("ab/cd/doc.pdf")).isTrue();
+        assertThat(store.delete("ab/cd/doc.pdf")).isFalse();
+        assertThatThrownBy(() -> store.open("ab/cd/doc.pdf")).isInstanceOf(NoSuchFileException.class);
+        assertThat(s3.rejected()).isEmpty();
+    }
+
+    @Test
+    void keysWithReservedCharactersAreSignedAsSent() throws IOException {
+        S3BlobStore store = store(SECRET_KEY);
+        String key = "legacy/отчёт 2024+(final)~.pdf";
+        Path source = write("report.pdf", new byte[]{1, 2, 3});
+
+        assertThat(store.put(key, source, null)).isTrue();
+
+        assertThat(s3.object(key)).containsExactly(1, 2, 3);
+        assertThat(s3.rejected()).isEmpty();
+    }
+
+    @Test
+    void largeFileIsUploadedInParts() throws IOException {
+        S3BlobStore store = store(SECRET_KEY);
+        byte[] content = new byte[PART_SIZE_MB * 1024 * 1024 * 2 + 12345];
+        new Random(42).nextBytes(content);
+        Path source = write("big.bin", content);
+
+        assertThat(store.put("ab/cd/big.bin", source, "application/octet-stream")).isTrue();
+
+        assertThat(s3.object("ab/cd/big.bin")).isEqualTo(content);
+        assertThat(s3.partsUploaded()).isEqualTo(3);
+        assertThat(s3.rejected()).isEmpty();
+    }
+
+    @Test
+    void wrongSecretIsRejectedByStorage() throws IOException {
+        S3BlobStore store = store("not-the-secret");
+        Path source = write("doc.pdf", new byte[]{1});
+
+        assertThatThrownBy(() -> store.put("ab/cd/doc.pdf", source, null))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("HTTP 403");
+        assertThat(s3.rejected()).isNotEmpty().allMatch(reason -> reason.endsWith("SignatureDoesNotMatch"));
+    }
+
+    @Test
+    void presignedLinkIsAcceptedAndCarriesCacheControl() throws Exception {
+        S3BlobStore store = store(SECRET_KEY);
+        store.put("ab/cd/photo.jpg", write("photo.jpg", new byte[]{9, 8, 7}), "image/jpeg");
+
+        BlobStore.DirectLink link = store.directLink("ab/cd/photo.jpg", "public, max-age=60");
+        HttpResponse<byte[]> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(link.uri()).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).containsExactly(9, 8, 7);
+        assertThat(response.headers().firstValue("Cache-Control")).hasValue("public, max-age=60");
+        assertThat(link.cacheFor()).isPositive();
+        // Внутри окна подписи ссылка не меняется — браузер берёт файл из кеша
+        assertThat(store.directLink("ab/cd/photo.jpg", "public, max-age=60").uri()).isEqualTo(link.uri());
+        assertThat(s3.rejected()).isEmpty();
+    }
+
+    private S3BlobStore store(String secretKey) {
+        return new S3BlobStore(s3.endpoint(), "", REGION, BUCKET, ACCESS_KEY, secretKey,
+                true, PART_SIZE_MB, 60, 10);
+    }
+
+    private Path write(String name, byte[] content) throws IOException {
+        return Files.write(tempDir.resolve(name), content);
+    }
+
+    /**
+     * Минимальный S3 (path-style): PUT/GET/HEAD/DELETE объекта, multipart upload, presigned GET
+     */
+    private static final class FakeS3 {
+
+        private static final Pattern AUTHORIZATION = Pattern.compile(
+                "AWS4-HMAC-SHA256 Credential=([^,]+), SignedHeaders=([^,]+), Signature=([0-9a-f]+)");
+        private static final DateTimeFormatter AMZ_DATE =
+                DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+        private final HttpServer server;
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        private final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+        private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+        private final List<String> rejected = new ArrayList<>();
+        private int partsUploaded;
+
+        FakeS3() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/", exchange -> {
+                try (exchange) {
+                    handle(exchange);
+                }
+            });
+            server.start();
+        }
+
+        String endpoint() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        synchronized byte[] object(String key) {
+            return objects.get(key);
+        }
+
+        synchronized String contentType(String key) {
+            return contentTypes.get(key);
+        }
+
+        synchronized int partsUploaded() {
+            return partsUploaded;
+        }
+
+        synchronized List<String> rejected() {
+            return List.copyOf(rejected);
+        }
+
+        private synchronized void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String rawPath = exchange.getRequestURI().getRawPath();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            String error = verify(exchange, method, rawPath, query, body);
+            if (error != null) {
+                rejected.add(method + " " + rawPath + ": " + error);
+                reply(exchange, 403, "<Error><Code>" + error + "</Code></Error>");
+                return;
+            }
+
+            String prefix = "/" + BUCKET + "/";
+            if (!rawPath.startsWith(prefix)) {
+                reply(exchange, 404, "<Error><Code>NoSuchBucket</Code></Error>");
+                return;
+            }
+            String key = decode(rawPath.substring(prefix.length()));
+
+            if (method.equals("POST") && query.containsKey("uploads")) {
+                String uploadId = "upload-" + (uploads.size() + 1);
+                uploads.put(uploadId, new TreeMap<>());
+                reply(exchange, 200, "<InitiateMultipartUploadResult><UploadId>" + uploadId
+                        + "</UploadId></InitiateMultipartUploadResult>");
+            } else if (method.equals("PUT") && query.containsKey("partNumber")) {
+                uploads.get(query.get("uploadId")).put(Integer.parseInt(query.get("partNumber")), body);
+                partsUploaded++;
+                exchange.getResponseHeaders().add("ETag", "\"" + sha256Hex(body) + "\"");
+                reply(exchange, 200, "");
+            } else if (method.equals("POST") && query.containsKey("uploadId")) {
+                Map<Integer, byte[]> parts = uploads.remove(query.get("uploadId"));
+                int size = parts.values().stream().mapToInt(part -> part.length).sum();
+                byte[] assembled = new byte[size];
+                int offset = 0;
+                for (byte[] part : parts.values()) {
+                    System.arraycopy(part, 0, assembled, offset, part.length);
+                    offset += part.length;
+                }
+                objects.put(key, assembled);
+                reply(exchange, 200, "<CompleteMultipartUploadResult/>");
+            } else if (method.equals("DELETE") && query.containsKey("uploadId")) {
+                uploads.remove(query.get("uploadId"));
+                reply(exchange, 204, null);
+            } else if (method.equals("PUT")) {
+                objects.put(key, body);
+                String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                if (contentType != null) {
+                    contentTypes.put(key, contentType);
+                }
+                reply(exchange, 200, "");
+            } else if (method.equals("DELETE")) {
+                objects.remove(key);
+                reply(exchange, 204, null);
+            } else if (!objects.containsKey(key)) {
+                reply(exchange, 404, method.equals("HEAD") ? null : "<Error><Code>NoSuchKey</Code></Error>");
+            } else if (method.equals("HEAD")) {
+                reply(exchange, 200, null);
+            } else {
+                if (query.containsKey("response-cache-control")) {
+                    exchange.getResponseHeaders().add("Cache-Control", query.get("response-cache-control"));
+                }
+                byte[] content = objects.get(key);
+                exchange.sendResponseHeaders(200, content.length);
+                exchange.getResponseBody().write(content);
+            }
+        }
+
+        /**
+         * @return код ошибки S3 или null, если подпись верна
+         */
+        private String verify(HttpExchange exchange, String method, String rawPath, Map<String, String> query,
+                              byte[] body) {
+            String host = exchange.getRequestHeaders().getFirst("Host");
+            String credential;
+            String signature;
+            String amzDate;
+            String canonicalRequest;
+
+            if (query.containsKey("X-Amz-Signature")) {
+                credential = query.get("X-Amz-Credential");
+                signature = query.get("X-Amz-Signature");
+                amzDate = query.get("X-Amz-Date");
+                Instant expires = Instant.from(AMZ_DATE.parse(amzDate))
+                        .plusSeconds(Long.parseLong(query.get("X-Amz-Expires")));
+                if (Instant.now().isAfter(expires)) {
+                    return "AccessDenied";
+                }
+                canonicalRequest = method + "\n" + canonicalUri(rawPath) + "\n" + canonicalQuery(query) + "\n"
+                        + "host:" + host + "\n\n" + query.get("X-Amz-SignedHeaders") + "\nUNSIGNED-PAYLOAD";
+            } else {
+                String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                Matcher matcher = authorization != null ? AUTHORIZATION.matcher(authorization) : null;
+                if (matcher == null || !matcher.matches()) {
+                    return "AccessDenied";
+                }
+                credential = matcher.group(1);
+                signature = matcher.group(3);
+                amzDate = exchange.getRequestHeaders().getFirst("x-amz-date");
+                String payloadHash = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+                if (!payloadHash.equals("UNSIGNED-PAYLOAD") && !payloadHash.equals(sha256Hex(body))) {
+                    return "XAmzContentSHA256Mismatch";
+                }
+                String signedHeaders = matcher.group(2);
+                StringBuilder headers = new StringBuilder();
+                for (String name : signedHeaders.split(";")) {
+                    String value = name.equals("host") ? host : exchange.getRequestHeaders().getFirst(name);
+                    headers.append(name).append(':').append(value.trim()).append('\n');
+                }
+                canonicalRequest = method + "\n" + canonicalUri(rawPath) + "\n" + canonicalQuery(query) + "\n"
+                        + headers + "\n" + signedHeaders + "\n" + payloadHash;
+            }
+
+            String[] scope = credential.split("/", 2);
+            if (!scope[0].equals(ACCESS_KEY)) {
+                return "InvalidAccessKeyId";
+            }
+            String[] scopeParts = scope[1].split("/");
+            if (!scopeParts[1].equals(REGION) || !scopeParts[2].equals("s3")) {
+                return "AuthorizationHeaderMalformed";
+            }
+            String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope[1] + "\n"
+                    + sha256Hex(canonicalRequest.getBytes(StandardCharsets.UTF_8));
+            byte[] key = hmac(("AWS4" + SECRET_KEY).getBytes(StandardCharsets.UTF_8), scopeParts[0]);
+            key = hmac(key, REGION);
+            key = hmac(key, "s3");
+            key = hmac(key, "aws4_request");
+            String expected = HexFormat.of().formatHex(hmac(key, stringToSign));
+            return expected.equals(signature) ? null : "SignatureDoesNotMatch";
+        }
+
+        /**
+         * Путь декодируется и кодируется заново: клиент должен был отправить его уже в канонической форме
+         */
+        private static String canonicalUri(String rawPath) {
+            return List.of(rawPath.split("/", -1)).stream()
+                    .map(segment -> encode(decode(segment)))
+                    .collect(Collectors.joining("/"));
+        }
+
+        private static String canonicalQuery(Map<String, String> query) {
+            return new TreeMap<>(query).entrySet().stream()
+                    .filter(entry -> !entry.getKey().equals("X-Amz-Signature"))
+                    .map(entry -> encode(entry.getKey()) + "=" + encode(entry.getValue()))
+                    .collect(Collectors.joining("&"));
+        }
+
+        private static Map<String, String> parseQuery(String rawQuery) {
+            Map<String, String> query = new TreeMap<>();
+            if (rawQuery == null || rawQuery.isEmpty()) {
+                return query;
+            }
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                query.put(decode(eq < 0 ? pair : pair.substring(0, eq)), eq < 0 ? "" : decode(pair.substring(eq + 1)));
+            }
+            return query;
+        }
+
+        private static String encode(String value) {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8)
+                    .replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+        }
+
+        private static String decode(String value) {
+            return URLDecoder.decode(value.replace("+", "%2B"), StandardCharsets.UTF_8);
+        }
+
+        private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+            if (body == null || exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+
+        private static String sha256Hex(byte[] data) {
+            try {
+                return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static byte[] hmac(byte[] key, String data) {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(key, "HmacSHA256"));
+                return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}